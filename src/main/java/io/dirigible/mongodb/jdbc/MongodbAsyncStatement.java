@@ -0,0 +1,43 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.sql.ResultSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking execution for MongoDB statements, obtained with <code>statement.unwrap(MongodbAsyncStatement.class)</code>.
+ * Each call runs independently of the others on the configured executor, so many operations can overlap on one statement.
+ * Cancelling a returned future cancels the corresponding operation on the server.
+ */
+public interface MongodbAsyncStatement {
+
+	CompletableFuture<ResultSet> executeQueryAsync(String sql);
+
+	CompletableFuture<Integer> executeUpdateAsync(String sql);
+
+	/**
+	 * Submits the commands added so far with addBatch and clears the batch of this statement.
+	 */
+	CompletableFuture<int[]> executeBatchAsync();
+
+	/**
+	 * Overrides the executor of the connection for the async operations of this statement.
+	 */
+	void setAsyncExecutor(Executor executor);
+
+}
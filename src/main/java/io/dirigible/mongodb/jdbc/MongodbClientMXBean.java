@@ -0,0 +1,55 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+/**
+ * The state of a shared MongoClient as JMX shows it: its connection pools, the heartbeats of its server monitors and
+ * what it knows about the cluster. Times are in milliseconds.
+ */
+public interface MongodbClientMXBean {
+
+	String getHosts();
+
+	/**
+	 * The number of JDBC connections that share the client.
+	 */
+	int getJdbcConnectionCount();
+
+	/**
+	 * The number of pooled connections to the servers, in use or not.
+	 */
+	int getPoolConnectionCount();
+
+	int getCheckedOutConnectionCount();
+
+	long getCheckOutCount();
+
+	long getHeartbeatCount();
+
+	long getHeartbeatFailureCount();
+
+	double getLastHeartbeatTime();
+
+	String getLastHeartbeatFailure();
+
+	String getClusterType();
+
+	/**
+	 * One line per known server: address, type, connection state and round trip time.
+	 */
+	String[] getServers();
+
+}
@@ -0,0 +1,220 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.event.ClusterClosedEvent;
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListener;
+import com.mongodb.event.ClusterOpeningEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionRemovedEvent;
+import com.mongodb.event.ServerHeartbeatFailedEvent;
+import com.mongodb.event.ServerHeartbeatStartedEvent;
+import com.mongodb.event.ServerHeartbeatSucceededEvent;
+import com.mongodb.event.ServerMonitorListener;
+
+/**
+ * Listens to the connection pool, server monitor and cluster events of a shared client and keeps the counts and state
+ * its MBean shows. The listeners only update counters, since the driver calls them on its own threads.
+ */
+public class MongodbClientMonitor extends ConnectionPoolListenerAdapter implements ServerMonitorListener, ClusterListener, MongodbClientMXBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbClientMonitor.class);
+
+	private static final AtomicInteger IDS = new AtomicInteger();
+
+	private final int id = IDS.incrementAndGet();
+	private final String hosts;
+	private volatile int jdbcConnectionCount;
+	private final AtomicInteger poolConnections = new AtomicInteger();
+	private final AtomicInteger checkedOut = new AtomicInteger();
+	private final LongAdder checkOuts = new LongAdder();
+	private final LongAdder heartbeats = new LongAdder();
+	private final LongAdder heartbeatFailures = new LongAdder();
+	private volatile long lastHeartbeatNanos;
+	private volatile String lastHeartbeatFailure;
+	private volatile ClusterDescription cluster;
+	private ObjectName name;
+
+	MongodbClientMonitor(List<String> hosts) {
+		this.hosts = String.join(",", hosts);
+	}
+
+	@Override
+	public void connectionAdded(ConnectionAddedEvent event) {
+		this.poolConnections.incrementAndGet();
+	}
+
+	@Override
+	public void connectionRemoved(ConnectionRemovedEvent event) {
+		this.poolConnections.decrementAndGet();
+	}
+
+	@Override
+	public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+		this.checkedOut.incrementAndGet();
+		this.checkOuts.increment();
+	}
+
+	@Override
+	public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+		this.checkedOut.decrementAndGet();
+	}
+
+	@Override
+	public void serverHearbeatStarted(ServerHeartbeatStartedEvent event) {
+	}
+
+	@Override
+	public void serverHeartbeatSucceeded(ServerHeartbeatSucceededEvent event) {
+		this.heartbeats.increment();
+		this.lastHeartbeatNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void serverHeartbeatFailed(ServerHeartbeatFailedEvent event) {
+		this.heartbeats.increment();
+		this.heartbeatFailures.increment();
+		this.lastHeartbeatFailure = event.getConnectionId().getServerId().getAddress() + ": " + event.getThrowable();
+	}
+
+	@Override
+	public void clusterOpening(ClusterOpeningEvent event) {
+	}
+
+	@Override
+	public void clusterClosed(ClusterClosedEvent event) {
+	}
+
+	@Override
+	public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+		this.cluster = event.getNewDescription();
+	}
+
+	void setJdbcConnectionCount(int jdbcConnectionCount) {
+		this.jdbcConnectionCount = jdbcConnectionCount;
+	}
+
+	/**
+	 * Registers the MBean of the client, unless it is registered already.
+	 */
+	synchronized void register() {
+		if (this.name != null)
+			return;
+		try {
+			ObjectName name = new ObjectName("io.dirigible.mongodb.jdbc:type=Client,id=" + this.id + ",hosts=" + ObjectName.quote(this.hosts));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, MongodbClientMXBean.class, true), name);
+			this.name = name;
+		} catch (JMException e) {
+			LOG.warn("Could not register the client of " + this.hosts + " with JMX", e);
+		}
+	}
+
+	synchronized void unregister() {
+		if (this.name == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+		} catch (JMException e) {
+			LOG.debug("Could not unregister " + this.name, e);
+		}
+		this.name = null;
+	}
+
+	@Override
+	public String getHosts() {
+		return this.hosts;
+	}
+
+	@Override
+	public int getJdbcConnectionCount() {
+		return this.jdbcConnectionCount;
+	}
+
+	@Override
+	public int getPoolConnectionCount() {
+		return this.poolConnections.get();
+	}
+
+	@Override
+	public int getCheckedOutConnectionCount() {
+		return this.checkedOut.get();
+	}
+
+	@Override
+	public long getCheckOutCount() {
+		return this.checkOuts.sum();
+	}
+
+	@Override
+	public long getHeartbeatCount() {
+		return this.heartbeats.sum();
+	}
+
+	@Override
+	public long getHeartbeatFailureCount() {
+		return this.heartbeatFailures.sum();
+	}
+
+	@Override
+	public double getLastHeartbeatTime() {
+		return this.lastHeartbeatNanos / 1000000.0;
+	}
+
+	@Override
+	public String getLastHeartbeatFailure() {
+		return this.lastHeartbeatFailure;
+	}
+
+	@Override
+	public String getClusterType() {
+		ClusterDescription cluster = this.cluster;
+		return cluster != null ? cluster.getType().name() : null;
+	}
+
+	@Override
+	public String[] getServers() {
+		ClusterDescription cluster = this.cluster;
+		if (cluster == null)
+			return new String[0];
+		List<ServerDescription> servers = cluster.getServerDescriptions();
+		String[] lines = new String[servers.size()];
+		for (int i = 0; i < lines.length; i++) {
+			ServerDescription server = servers.get(i);
+			lines[i] = server.getAddress() + " " + server.getType() + " " + server.getState() + " " + TimeUnit.NANOSECONDS.toMillis(server.getRoundTripTimeNanos()) + " ms";
+		}
+		return lines;
+	}
+
+}
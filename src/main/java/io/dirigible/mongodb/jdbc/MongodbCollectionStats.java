@@ -0,0 +1,119 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * Size statistics of a collection, summed over all shards of a sharded one.
+ */
+public class MongodbCollectionStats {
+
+	private final String namespace;
+	private long documentCount;
+	private long size;
+	private long storageSize;
+	private long totalIndexSize;
+	private final Map<String, Long> indexSizes = new LinkedHashMap<String, Long>();
+
+	private MongodbCollectionStats(String namespace) {
+		this.namespace = namespace;
+	}
+
+	/**
+	 * Reads the statistics with a <code>$collStats</code> stage, or with the collStats command from servers that do not
+	 * have the stage.
+	 */
+	static MongodbCollectionStats read(MongoDatabase db, String collectionName) {
+		MongodbCollectionStats stats = new MongodbCollectionStats(db.getName() + "." + collectionName);
+		List<BsonDocument> shards = new ArrayList<BsonDocument>();
+		try {
+			BsonDocument stage = new BsonDocument("$collStats", new BsonDocument("storageStats", new BsonDocument()));
+			for (BsonDocument shard : db.getCollection(collectionName, BsonDocument.class).aggregate(Collections.singletonList(stage))) {
+				shards.add(shard.getDocument("storageStats"));
+			}
+		} catch (MongoCommandException e) {
+			shards.add(db.runCommand(new BsonDocument("collStats", new BsonString(collectionName)), BsonDocument.class));
+		}
+		for (BsonDocument shard : shards) {
+			stats.documentCount += longValue(shard, "count");
+			stats.size += longValue(shard, "size");
+			stats.storageSize += longValue(shard, "storageSize");
+			stats.totalIndexSize += longValue(shard, "totalIndexSize");
+			for (Map.Entry<String, BsonValue> index : shard.getDocument("indexSizes", new BsonDocument()).entrySet()) {
+				long indexSize = index.getValue().isNumber() ? index.getValue().asNumber().longValue() : 0;
+				stats.indexSizes.merge(index.getKey(), indexSize, Long::sum);
+			}
+		}
+		return stats;
+	}
+
+	private static long longValue(BsonDocument document, String key) {
+		return document.isNumber(key) ? document.getNumber(key).longValue() : 0;
+	}
+
+	public String getNamespace() {
+		return this.namespace;
+	}
+
+	public long getDocumentCount() {
+		return this.documentCount;
+	}
+
+	/**
+	 * The uncompressed size of all documents in bytes.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * The average uncompressed document size in bytes, or 0 for an empty collection.
+	 */
+	public long getAverageDocumentSize() {
+		return this.documentCount > 0 ? this.size / this.documentCount : 0;
+	}
+
+	/**
+	 * The bytes allocated for the documents on disk.
+	 */
+	public long getStorageSize() {
+		return this.storageSize;
+	}
+
+	public long getTotalIndexSize() {
+		return this.totalIndexSize;
+	}
+
+	/**
+	 * The size in bytes of each index by name.
+	 */
+	public Map<String, Long> getIndexSizes() {
+		return Collections.unmodifiableMap(this.indexSizes);
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+/**
+ * Attributes the commands of the driver to the statement execution the current thread works for, with their round
+ * trip time and reply size. The synchronous driver reports command events on the thread that runs the command, so a
+ * thread local is enough to correlate them.
+ */
+class MongodbCommandListener implements CommandListener {
+
+	static final MongodbCommandListener INSTANCE = new MongodbCommandListener();
+
+	private static final ThreadLocal<MongodbExecution> CURRENT = new ThreadLocal<MongodbExecution>();
+
+	private MongodbCommandListener(){}
+
+	/**
+	 * Attributes the commands the current thread runs from now on to execution, which may be null. Returns what they
+	 * were attributed to before, to be passed to restore.
+	 */
+	static MongodbExecution attribute(MongodbExecution execution) {
+		MongodbExecution previous = CURRENT.get();
+		if (execution != previous)
+			CURRENT.set(execution);
+		return previous;
+	}
+
+	/**
+	 * Marks the execution the current thread works for, if any, as waiting for commands of other threads, see
+	 * MongodbExecution.delegated.
+	 */
+	static void delegated() {
+		MongodbExecution execution = CURRENT.get();
+		if (execution != null)
+			execution.delegated();
+	}
+
+	static void restore(MongodbExecution previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	@Override
+	public void commandStarted(CommandStartedEvent event) {
+		MongodbExecution execution = CURRENT.get();
+		if (execution != null)
+			execution.started(event.getCommandName());
+	}
+
+	@Override
+	public void commandSucceeded(CommandSucceededEvent event) {
+		MongodbExecution execution = CURRENT.get();
+		if (execution != null)
+			execution.replied(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), event.getResponse(), size(event.getResponse()));
+	}
+
+	@Override
+	public void commandFailed(CommandFailedEvent event) {
+		MongodbExecution execution = CURRENT.get();
+		if (execution != null)
+			execution.failed(event.getElapsedTime(TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * The size of a reply. The driver hands replies to listeners undecoded, so this costs nothing.
+	 */
+	private static long size(BsonDocument response) {
+		return response instanceof RawBsonDocument ? ((RawBsonDocument) response).getByteBuffer().remaining() : 0;
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the server commands of a statement cost, summed over its executions: the round trips to the server as the
+ * driver measured them, the size of the replies, and the time spent in the driver on top of that, mostly decoding
+ * replies into documents. Times are in milliseconds.
+ */
+public class MongodbCommandStats {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder commands = new LongAdder();
+	private final LongAdder failedCommands = new LongAdder();
+	private final LongAdder serverNanos = new LongAdder();
+	private final LongAdder clientNanos = new LongAdder();
+	private final LongAdder replyBytes = new LongAdder();
+
+	void add(int commands, int failedCommands, long serverNanos, long clientNanos, long replyBytes) {
+		this.executions.increment();
+		this.commands.add(commands);
+		this.failedCommands.add(failedCommands);
+		this.serverNanos.add(serverNanos);
+		this.clientNanos.add(clientNanos);
+		this.replyBytes.add(replyBytes);
+	}
+
+	/**
+	 * The number of executions whose result sets were closed, or updates that completed.
+	 */
+	public long getExecutionCount() {
+		return this.executions.sum();
+	}
+
+	public long getCommandCount() {
+		return this.commands.sum();
+	}
+
+	public long getFailedCommandCount() {
+		return this.failedCommands.sum();
+	}
+
+	/**
+	 * The time from sending commands until their replies arrived: time on the server and on the network.
+	 */
+	public double getServerTime() {
+		return this.serverNanos.sum() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * The time spent executing and fetching, less the server time.
+	 */
+	public double getClientTime() {
+		return this.clientNanos.sum() / NANOS_PER_MILLI;
+	}
+
+	public long getReplyBytes() {
+		return this.replyBytes.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "executions=" + this.getExecutionCount() + ", commands=" + this.getCommandCount() + ", failed=" + this.getFailedCommandCount()
+				+ ", serverTime=" + this.getServerTime() + "ms, clientTime=" + this.getClientTime() + "ms, replyBytes=" + this.getReplyBytes();
+	}
+
+}
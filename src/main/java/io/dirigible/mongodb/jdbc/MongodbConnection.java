@@ -15,7 +15,6 @@
  */
 package io.dirigible.mongodb.jdbc;
 
-import io.dirigible.mongodb.jdbc.util.SingleColumnMongoIteratorResultSet;
 import io.dirigible.mongodb.jdbc.util.SingleColumnStaticResultSet;
 
 import java.sql.Array;
@@ -35,10 +34,22 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
@@ -51,6 +62,11 @@ import org.slf4j.LoggerFactory;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 
@@ -64,15 +80,52 @@ public class MongodbConnection implements Connection {
 	
 	private String dbName;
 	private String collectionName;
-	private boolean isClosed = true;
+	//also closed by closeIdleConnections of the driver MBean, from a JMX thread
+	private volatile boolean isClosed = true;
 	private boolean isReadonly = false;
 	
+	private MongodbSharedClient sharedClient;
 	private MongoClient client;
 	private MongoClientOptions clientOptions;
 	MongoDatabase db;
 	MongoCollection<Document> collection;
 	
 	private MongodbDatabaseMetadata metadata;
+	private ExecutorService executor;
+	private Executor asyncExecutor;
+	private boolean ownsAsyncExecutor;
+	private long autoExplainThreshold = -1;
+	private final MongodbCursorTracker cursorTracker = new MongodbCursorTracker();
+	private ReadPreference readOnlyReadPreference = ReadPreference.secondaryPreferred();
+	private long readYourWritesWindow = 90000;
+	private volatile long lastWriteTime;
+	//by namespace, for the collections with a local replica
+	private final Map<String, Long> replicaWriteTimes = new ConcurrentHashMap<String, Long>();
+	private volatile long lastUsedTime = System.currentTimeMillis();
+	//weakly held, so that statements that are never closed can still be reclaimed
+	private final Set<MongodbStatement> statements = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<MongodbStatement, Boolean>()));
+	private int statementCacheSize = 0;
+	private MongodbWriteCoalescer writeCoalescer;
+	private MongodbPointLookupLoader pointLookupLoader;
+	private MongodbNearCache nearCache;
+	private MongodbResultCache resultCache;
+	private int schemaSampleSize = MongodbSchemaInference.DEFAULT_SAMPLE_SIZE;
+	private long metadataCacheTtl = 600000;
+	private long collStatsCacheTtl = 60000;
+	private long batchSizeBytes = 4 * 1024 * 1024;
+	private boolean isMetricsEnabled = true;
+	private int metadataConcurrency = 8;
+	private final Map<String, MongodbLocalReplica> localReplicas = new HashMap<String, MongodbLocalReplica>();
+	private final Map<String, MongodbPreparedStatement> statementCache = new LinkedHashMap<String, MongodbPreparedStatement>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MongodbPreparedStatement> eldest) {
+			if(size() <= statementCacheSize)
+				return false;
+			discard(eldest.getValue());
+			return true;
+		}
+	};
 	
 	public MongodbConnection(String url, Properties info) {
 		String dbUrl = url.replace("jdbc:", "");
@@ -81,9 +134,25 @@ public class MongodbConnection implements Connection {
 		this.dbName = this.uri.getDatabase();
 		this.collectionName = this.uri.getCollection();
 		
-		this.client = new MongoClient(this.uri);
+		this.sharedClient = MongodbSharedClient.acquire(this.uri);
+		this.client = this.sharedClient.getClient();
+		try {
+			this.configure(info);
+		} catch (RuntimeException | Error e) {
+			//e.g. a property that is not a number; the shared client must not be held on to
+			this.sharedClient.release();
+			throw e;
+		}
 		this.isClosed = false;
+		MongodbDriverMonitor.getInstance().opened(this);
 		
+		LOG.debug("Connected with client properties: "+this.info.toString());
+	}
+	
+	/**
+	 * Applies the client options and connection properties.
+	 */
+	private void configure(Properties info) {
 		this.info = info;
 		if(this.info == null)
 			this.info = new Properties();
@@ -97,16 +166,433 @@ public class MongodbConnection implements Connection {
 		if(this.collectionName!=null)
 			this.collection = this.db.getCollection(this.collectionName);
 		
-		LOG.debug("Connected with client properties: "+this.info.toString());
+		if(this.info.getProperty("autoExplainThreshold")!=null)
+			this.autoExplainThreshold = Long.parseLong(this.info.getProperty("autoExplainThreshold"));
+		if(this.info.getProperty("captureCursorCreationSite")!=null)
+			this.cursorTracker.setCaptureCreationSite(Boolean.parseBoolean(this.info.getProperty("captureCursorCreationSite")));
+		if(this.info.getProperty("readOnlyReadPreference")!=null || this.info.getProperty("readOnlyTags")!=null || this.info.getProperty("readOnlyMaxStaleness")!=null)
+			this.readOnlyReadPreference = readPreference(this.info.getProperty("readOnlyReadPreference", this.readOnlyReadPreference.getName()), this.info.getProperty("readOnlyTags"), this.info.getProperty("readOnlyMaxStaleness"));
+		if(this.info.getProperty("readYourWritesWindow")!=null)
+			this.readYourWritesWindow = Long.parseLong(this.info.getProperty("readYourWritesWindow"));
+		if(this.info.getProperty("statementCacheSize")!=null)
+			this.statementCacheSize = Integer.parseInt(this.info.getProperty("statementCacheSize"));
+		if(Boolean.parseBoolean(this.info.getProperty("writeCoalescing"))){
+			long window = Long.parseLong(this.info.getProperty("writeCoalescingWindow", "2"));
+			int maxBatchSize = Integer.parseInt(this.info.getProperty("writeCoalescingMaxBatchSize", "1000"));
+			this.writeCoalescer = this.sharedClient.getWriteCoalescer(window, maxBatchSize);
+		}
+		if(Boolean.parseBoolean(this.info.getProperty("pointLookupBatching"))){
+			long window = Long.parseLong(this.info.getProperty("pointLookupWindow", "1"));
+			int maxBatchSize = Integer.parseInt(this.info.getProperty("pointLookupMaxBatchSize", "500"));
+			this.pointLookupLoader = this.sharedClient.getPointLookupLoader(window, maxBatchSize);
+		}
+		if(this.info.getProperty("nearCache")!=null)
+			this.nearCache = this.sharedClient.getNearCache(this.info.getProperty("nearCache"));
+		if(this.info.getProperty("resultCacheSize")!=null){
+			long ttl = Long.parseLong(this.info.getProperty("resultCacheTtl", ""+MongodbResultCache.DEFAULT_TTL));
+			this.resultCache = this.sharedClient.getResultCache(Long.parseLong(this.info.getProperty("resultCacheSize")), ttl);
+		}
+		if(this.info.getProperty("schemaSampleSize")!=null)
+			this.schemaSampleSize = Integer.parseInt(this.info.getProperty("schemaSampleSize"));
+		if(this.info.getProperty("metadataCacheTtl")!=null)
+			this.metadataCacheTtl = Long.parseLong(this.info.getProperty("metadataCacheTtl"));
+		if(this.info.getProperty("collStatsCacheTtl")!=null)
+			this.collStatsCacheTtl = Long.parseLong(this.info.getProperty("collStatsCacheTtl"));
+		if(this.info.getProperty("metrics")!=null)
+			this.isMetricsEnabled = Boolean.parseBoolean(this.info.getProperty("metrics"));
+		if(Boolean.parseBoolean(this.info.getProperty("metricsJmx")))
+			MongodbMetrics.getInstance().addExporter(MongodbJmxMetricsExporter.getInstance());
+		if(this.info.getProperty("batchSizeBytes")!=null)
+			this.batchSizeBytes = Long.parseLong(this.info.getProperty("batchSizeBytes"));
+		if(this.info.getProperty("metadataConcurrency")!=null)
+			this.metadataConcurrency = Integer.parseInt(this.info.getProperty("metadataConcurrency"));
+		if(this.info.getProperty("localReplicas")!=null && this.db!=null){
+			for(String name: this.info.getProperty("localReplicas").split(",")){
+				if(!name.trim().isEmpty())
+					this.localReplicas.put(name.trim(), this.sharedClient.getLocalReplica(this.db.getCollection(name.trim())));
+			}
+		}
+		
+		if(Boolean.parseBoolean(this.info.getProperty("jmx"))){
+			MongodbDriverMonitor.getInstance().register();
+			this.sharedClient.getMonitor().register();
+		}
+	}
+	
+	/**
+	 * Called by every statement of the connection when it is created.
+	 */
+	void statementCreated(MongodbStatement statement) {
+		this.statements.add(statement);
+		this.used();
+	}
+	
+	/**
+	 * Called whenever the connection is used, to tell idle connections from busy ones.
+	 */
+	void used() {
+		this.lastUsedTime = System.currentTimeMillis();
+	}
+	
+	long getLastUsedTime() {
+		return this.lastUsedTime;
+	}
+	
+	/**
+	 * The number of statements of the connection that are not closed. Closed statements kept for reuse by the statement
+	 * cache do not count.
+	 */
+	public int getOpenStatementCount() {
+		int count = 0;
+		synchronized(this.statements){
+			for(MongodbStatement statement: this.statements){
+				if(!statement.isClosed)
+					count++;
+			}
+		}
+		return count;
 	}
 	
 	MongoDatabase getMongoDb() {
 		return this.db;
 	}
 	
+	/**
+	 * A database of the shared client, or the current catalog of the connection for null.
+	 */
+	MongoDatabase getMongoDb(String dbName) {
+		return dbName == null || dbName.equals(this.dbName) ? this.db : this.client.getDatabase(dbName);
+	}
+	
+	/**
+	 * The database for queries, the current catalog for null. Read-only connections read with their read-only read
+	 * preference, except shortly after a write on the connection, when reads stay on the primary so that they see that write.
+	 */
+	MongoDatabase getReadMongoDb(String dbName) {
+		MongoDatabase db = this.getMongoDb(dbName);
+		if(this.isReadonly && System.currentTimeMillis() - this.lastWriteTime >= this.readYourWritesWindow)
+			return db.withReadPreference(this.readOnlyReadPreference);
+		return db;
+	}
+	
+	/**
+	 * Called after every write through this connection, with the namespace the write names. Writes always go to the primary.
+	 */
+	void writePerformed(String namespace) {
+		long now = System.currentTimeMillis();
+		this.lastWriteTime = now;
+		for(MongodbLocalReplica replica: this.localReplicas.values()){
+			if(replica.getNamespace().equals(namespace))
+				this.replicaWriteTimes.put(namespace, now);
+		}
+	}
+	
+	/**
+	 * Whether this connection wrote to a namespace less than readYourWritesWindow milliseconds ago, so that its local
+	 * replica may not have applied the write yet.
+	 */
+	boolean isWithinReadYourWritesWindow(String namespace) {
+		Long lastWrite = this.replicaWriteTimes.get(namespace);
+		return lastWrite != null && System.currentTimeMillis() - lastWrite < this.readYourWritesWindow;
+	}
+	
+	/**
+	 * Parses a read preference mode, tag sets as in <code>dc:east,rack:1;dc:west</code>, and a max staleness in seconds.
+	 */
+	static ReadPreference readPreference(String mode, String tags, String maxStaleness) {
+		List<TagSet> tagSets = new ArrayList<TagSet>();
+		if(tags!=null){
+			for(String tagSet: tags.split(";", -1)){
+				List<Tag> tagList = new ArrayList<Tag>();
+				for(String tag: tagSet.split(",")){
+					if(tag.trim().isEmpty())
+						continue;
+					String[] nameValue = tag.split(":", 2);
+					if(nameValue.length<2)
+						throw new IllegalArgumentException("Tags must be name:value pairs: " + tag);
+					tagList.add(new Tag(nameValue[0].trim(), nameValue[1].trim()));
+				}
+				tagSets.add(new TagSet(tagList));
+			}
+		}
+		if(tagSets.isEmpty() && maxStaleness==null)
+			return ReadPreference.valueOf(mode);
+		return ReadPreference.valueOf(mode, tagSets, maxStaleness != null ? Long.parseLong(maxStaleness) : -1, TimeUnit.SECONDS);
+	}
+	
+	public ReadPreference getReadOnlyReadPreference() {
+		return this.readOnlyReadPreference;
+	}
+	
+	/**
+	 * The read preference of queries on this connection while it is read-only, secondaryPreferred unless set with
+	 * the readOnlyReadPreference, readOnlyTags and readOnlyMaxStaleness connection properties.
+	 */
+	public void setReadOnlyReadPreference(ReadPreference readOnlyReadPreference) {
+		this.readOnlyReadPreference = readOnlyReadPreference;
+	}
+	
 	String getCollectionName(){
 		return this.collectionName;
 	}
+	
+	/**
+	 * Worker threads for operations that fan out over the client's connection pool, e.g. parallel scans.
+	 */
+	synchronized ExecutorService getExecutor(){
+		if(this.executor==null){
+			this.executor = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "mongodb-jdbc-worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return this.executor;
+	}
+	
+	/**
+	 * The executor for async statement operations. Unless one is set, virtual threads are used when the JVM
+	 * supports them and the connection worker threads otherwise.
+	 */
+	synchronized Executor getAsyncExecutor(){
+		if(this.asyncExecutor==null){
+			try {
+				this.asyncExecutor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				this.ownsAsyncExecutor = true;
+			} catch (ReflectiveOperationException e) {
+				this.asyncExecutor = this.getExecutor();
+			}
+		}
+		return this.asyncExecutor;
+	}
+	
+	public synchronized void setAsyncExecutor(Executor asyncExecutor){
+		this.asyncExecutor = asyncExecutor;
+		this.ownsAsyncExecutor = false;
+	}
+	
+	/**
+	 * Queries slower than this many milliseconds are explained in the background and their collection scans logged.
+	 * Negative values, the default, turn auto-explain off. Set with the autoExplainThreshold connection property.
+	 */
+	public long getAutoExplainThreshold() {
+		return this.autoExplainThreshold;
+	}
+	
+	public void setAutoExplainThreshold(long autoExplainThreshold) {
+		this.autoExplainThreshold = autoExplainThreshold;
+	}
+	
+	/**
+	 * The number of closed poolable prepared statements kept for reuse, least recently used first out. Zero, the default,
+	 * turns statement caching off. Set with the statementCacheSize connection property.
+	 */
+	public int getStatementCacheSize() {
+		return this.statementCacheSize;
+	}
+	
+	public void setStatementCacheSize(int statementCacheSize) {
+		synchronized(this.statementCache){
+			this.statementCacheSize = statementCacheSize;
+			Iterator<String> specs = this.statementCache.keySet().iterator();
+			while(this.statementCache.size() > Math.max(statementCacheSize, 0) && specs.hasNext()){
+				discard(this.statementCache.get(specs.next()));
+				specs.remove();
+			}
+		}
+	}
+	
+	void cacheStatement(MongodbPreparedStatement stmnt) {
+		synchronized(this.statementCache){
+			MongodbPreparedStatement replaced = this.statementCache.put(stmnt.pStmntString, stmnt);
+			if(replaced!=null && replaced!=stmnt)
+				discard(replaced);
+		}
+	}
+	
+	/**
+	 * Closes a statement the statement cache drops, with its result sets and their cursors.
+	 */
+	private static void discard(MongodbPreparedStatement stmnt) {
+		try {
+			stmnt.discard();
+		} catch (SQLException e) {
+			LOG.debug("Could not close cached statement", e);
+		}
+	}
+	
+	/**
+	 * The open cursors of this connection and the counters of opened and leaked ones.
+	 */
+	public MongodbCursorTracker getCursorTracker() {
+		return this.cursorTracker;
+	}
+	
+	/**
+	 * The coalescer that groups the inserts of this connection with those of other connections to the same URI, or null
+	 * unless the writeCoalescing connection property is true.
+	 */
+	MongodbWriteCoalescer getWriteCoalescer() {
+		return this.writeCoalescer;
+	}
+	
+	/**
+	 * The batcher that merges the <code>_id</code> lookups of this connection with those of other connections to the same
+	 * URI, or null unless the pointLookupBatching connection property is true.
+	 */
+	MongodbPointLookupLoader getPointLookupLoader() {
+		return this.pointLookupLoader;
+	}
+	
+	/**
+	 * The cache of documents read by <code>_id</code> or unique key, shared with the other connections to the same URI,
+	 * or null unless the nearCache connection property names the collections to cache.
+	 */
+	public MongodbNearCache getNearCache() {
+		return this.nearCache;
+	}
+	
+	/**
+	 * The cache of find and aggreg results shared with the other connections to the same URI, or null unless the
+	 * resultCacheSize connection property sets its budget in bytes.
+	 */
+	public MongodbResultCache getResultCache() {
+		return this.resultCache;
+	}
+	
+	/**
+	 * The change stream synchronized copies of the collections named in the localReplicas connection property, by
+	 * collection name. They are shared with the other connections to the same URI that name them too.
+	 */
+	public Map<String, MongodbLocalReplica> getLocalReplicas() {
+		return Collections.unmodifiableMap(this.localReplicas);
+	}
+	
+	/**
+	 * The query metrics of all connections in the JVM. Statements of this connection add to them unless the metrics
+	 * connection property is false.
+	 */
+	public MongodbMetrics getMetrics() {
+		return MongodbMetrics.getInstance();
+	}
+	
+	boolean isMetricsEnabled() {
+		return this.isMetricsEnabled;
+	}
+	
+	/**
+	 * The metadata cache shared by all connections to the same URI. Its refresh methods make the next metadata calls
+	 * read from the server again, for example after a collection was changed by another application.
+	 */
+	public MongodbMetadataCache getMetadataCache() {
+		return this.sharedClient.getMetadataCache();
+	}
+	
+	/**
+	 * The version of the server, read with buildInfo at most once every metadataCacheTtl milliseconds.
+	 */
+	String getServerVersion() {
+		return this.getMetadataCache().get("buildInfo", "", this.metadataCacheTtl,
+				() -> this.getAdminDb().runCommand(new Document("buildInfo", 1))).getString("version");
+	}
+	
+	/**
+	 * The names of the databases of the cluster, that is the catalogs, from the metadata cache of the shared client if
+	 * they were listed less than metadataCacheTtl milliseconds ago.
+	 */
+	List<String> getDatabaseNames() {
+		return this.getMetadataCache().get("databases", "", this.metadataCacheTtl,
+				() -> this.client.listDatabaseNames().into(new ArrayList<String>()));
+	}
+	
+	/**
+	 * The listCollections results of a database for a filter, from the metadata cache of the shared client if they were
+	 * listed less than metadataCacheTtl milliseconds ago.
+	 */
+	List<BsonDocument> getCollections(MongoDatabase db, BsonDocument filter) {
+		return this.getMetadataCache().get("collections" + filter.toJson(), db.getName(), this.metadataCacheTtl,
+				() -> db.listCollections(BsonDocument.class).filter(filter).into(new ArrayList<BsonDocument>()));
+	}
+	
+	/**
+	 * The inferred columns of a collection, from the metadata cache of the shared client if they were inferred less than
+	 * metadataCacheTtl milliseconds ago. Each inference samples schemaSampleSize documents.
+	 */
+	List<MongodbSchemaInference.Column> getColumns(MongoDatabase db, String collectionName) {
+		String namespace = db.getName() + "." + collectionName;
+		return this.getMetadataCache().get("columns", namespace, this.metadataCacheTtl,
+				() -> MongodbSchemaInference.infer(db, collectionName, this.schemaSampleSize));
+	}
+	
+	/**
+	 * The statistics of a collection, from the metadata cache of the shared client if they were read less than
+	 * collStatsCacheTtl milliseconds ago, or null for a view.
+	 */
+	MongodbCollectionStats getCollectionStats(MongoDatabase db, String collectionName) {
+		String namespace = db.getName() + "." + collectionName;
+		return this.getMetadataCache().get("collStats", namespace, this.collStatsCacheTtl, () -> {
+			try {
+				return MongodbCollectionStats.read(db, collectionName);
+			} catch (MongoCommandException e) {
+				//CommandNotSupportedOnView
+				if (e.getErrorCode() == 166)
+					return null;
+				throw e;
+			}
+		});
+	}
+	
+	/**
+	 * A cursor batch size that fits about batchSizeBytes of documents of the average size of a collection into each
+	 * batch, or null to leave it to the server: if batchSizeBytes is 0, or the statistics are not known.
+	 */
+	Integer getAutoBatchSize(MongoDatabase db, String collectionName) {
+		if (this.batchSizeBytes <= 0)
+			return null;
+		String namespace = db.getName() + "." + collectionName;
+		//statistics that could not be read are not known for collStatsCacheTtl either, rather than asked for by every query
+		Long averageDocumentSize = this.getMetadataCache().get("averageDocumentSize", namespace, this.collStatsCacheTtl, () -> {
+			try {
+				MongodbCollectionStats stats = this.getCollectionStats(db, collectionName);
+				return stats == null || stats.getAverageDocumentSize() <= 0 ? null : stats.getAverageDocumentSize();
+			} catch (MongoException e) {
+				LOG.debug("No statistics of " + collectionName + " to size batches by", e);
+				return null;
+			}
+		});
+		if (averageDocumentSize == null)
+			return null;
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, this.batchSizeBytes / averageDocumentSize));
+	}
+	
+	/**
+	 * The index specifications of a collection as listIndexes returns them, from the metadata cache of the shared client
+	 * if they were listed less than metadataCacheTtl milliseconds ago. Views have none.
+	 */
+	List<BsonDocument> getIndexes(MongoDatabase db, String collectionName) {
+		String namespace = db.getName() + "." + collectionName;
+		return this.getMetadataCache().get("indexes", namespace, this.metadataCacheTtl, () -> {
+			try {
+				return db.getCollection(collectionName).listIndexes(BsonDocument.class).into(new ArrayList<BsonDocument>());
+			} catch (MongoCommandException e) {
+				//CommandNotSupportedOnView
+				if (e.getErrorCode() == 166)
+					return Collections.<BsonDocument>emptyList();
+				throw e;
+			}
+		});
+	}
+	
+	/**
+	 * The number of collections whose metadata is read at the same time, set with the metadataConcurrency connection property.
+	 */
+	int getMetadataConcurrency() {
+		return this.metadataConcurrency;
+	}
+	
+	MongoDatabase getAdminDb() {
+		return this.client.getDatabase("admin");
+	}
 
 	private Properties mongoClientOptionsAsProperties(MongoClientOptions ops, Properties props){
 		//TODO: write complex object properties too?
@@ -161,6 +647,16 @@ public class MongodbConnection implements Connection {
 
 	@Override
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		if(this.statementCacheSize > 0 && sql != null){
+			MongodbPreparedStatement cached;
+			synchronized(this.statementCache){
+				cached = this.statementCache.remove(sql);
+			}
+			if(cached!=null){
+				cached.isClosed = false;
+				return cached;
+			}
+		}
 		return new MongodbPreparedStatement(this, sql);
 	}
 	
@@ -176,7 +672,8 @@ public class MongodbConnection implements Connection {
 	
 	@Override
 	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-		throw new SQLFeatureNotSupportedException();
+		//the ids of inserted documents are always known
+		return this.prepareStatement(sql);
 	}
 
 	@Override
@@ -236,9 +733,24 @@ public class MongodbConnection implements Connection {
 	}
 
 	@Override
-	public void close() throws SQLException {
-		this.client.close();
+	public synchronized void close() throws SQLException {
+		if(this.isClosed)
+			return;
+		synchronized(this.statementCache){
+			for(MongodbPreparedStatement stmnt: this.statementCache.values())
+				discard(stmnt);
+			this.statementCache.clear();
+		}
+		synchronized(this){
+			if(this.executor!=null)
+				this.executor.shutdownNow();
+			if(this.ownsAsyncExecutor)
+				((ExecutorService) this.asyncExecutor).shutdownNow();
+		}
+		this.cursorTracker.closeAll();
 		this.isClosed = true;
+		MongodbDriverMonitor.getInstance().closed(this);
+		this.sharedClient.release();
 	}
 
 	@Override
@@ -250,16 +762,14 @@ public class MongodbConnection implements Connection {
 	public DatabaseMetaData getMetaData() throws SQLException {
 		if(metadata==null){
 			metadata = new MongodbDatabaseMetadata();
-			Document response = db.runCommand(BsonDocument.parse("{ buildInfo: 1 }"));
+			metadata.setConnection(this);
 			metadata.setDatabaseProductName("MongoDB");
-			metadata.setDatabaseProductVersion(response.getString("version"));
+			metadata.setDatabaseProductVersion(this.getServerVersion());
 			metadata.setDriverName("Java Driver");
 			metadata.setURL(this.uri.getURI());
 		}
-		metadata.setIsReadOnly(client.isLocked());
 		ResultSet schemasRS = new SingleColumnStaticResultSet(Arrays.asList(new String[]{"default"}).iterator());
 		metadata.setSchemas(schemasRS);
-		metadata.setTables(new SingleColumnMongoIteratorResultSet(this.db.listCollectionNames()));
 		
 		return metadata;
 	}
@@ -276,12 +786,16 @@ public class MongodbConnection implements Connection {
 
 	@Override
 	public void setCatalog(String catalog) throws SQLException {
-		//silently ignore
+		//catalogs are databases, all served by the shared client of the connection
+		this.dbName = catalog;
+		this.db = catalog != null ? this.client.getDatabase(catalog) : null;
+		if(this.collectionName!=null && this.db!=null)
+			this.collection = this.db.getCollection(this.collectionName);
 	}
 
 	@Override
 	public String getCatalog() throws SQLException {
-		return null;
+		return this.dbName;
 	}
 
 	@Override
@@ -358,6 +872,8 @@ public class MongodbConnection implements Connection {
 	}
 	@Override
 	public boolean isValid(int timeout) throws SQLException {
+		if(this.isClosed)
+			return false;
 		Document response = this.db.runCommand(new BsonDocument("ping", new BsonInt32(1)));
 		response.getDouble("ok");
 		return response != null && response.getDouble("ok")==1.0;
@@ -0,0 +1,230 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.client.MongoCursor;
+
+/**
+ * Keeps track of the cursors opened by the result sets of a connection. When a result set becomes unreachable without
+ * having been closed, its cursor is closed by a background thread, which frees the cursor on the server too.
+ */
+public class MongodbCursorTracker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbCursorTracker.class);
+
+	private static final ReferenceQueue<Object> UNREACHABLE = new ReferenceQueue<Object>();
+
+	static {
+		Thread reaper = new Thread(MongodbCursorTracker::reapLeakedCursors, "mongodb-jdbc-cursor-reaper");
+		reaper.setDaemon(true);
+		reaper.start();
+	}
+
+	private final Set<TrackedCursor> openCursors = ConcurrentHashMap.newKeySet();
+	private final AtomicLong openedCount = new AtomicLong();
+	private final AtomicLong leakedCount = new AtomicLong();
+	private volatile boolean captureCreationSite;
+
+	/**
+	 * A cursor together with what is needed to report it. It must not reference its owner, or the owner never becomes unreachable.
+	 */
+	static class TrackedCursor extends PhantomReference<Object> {
+
+		private static final int IDLE = 0;
+		private static final int IN_USE = 1;
+		private static final int KILL_REQUESTED = 2;
+		private static final int KILLED = 3;
+
+		private final MongodbCursorTracker tracker;
+		private final MongoCursor<?> cursor;
+		private final String collectionName;
+		private final long createdAt = System.currentTimeMillis();
+		private final Throwable creationSite;
+		//MongoCursor is not thread-safe, so a cursor its owner is using is closed by the owner once it is done
+		private final AtomicInteger state = new AtomicInteger(IDLE);
+
+		TrackedCursor(MongodbCursorTracker tracker, Object owner, MongoCursor<?> cursor, String collectionName, Throwable creationSite) {
+			super(owner, UNREACHABLE);
+			this.tracker = tracker;
+			this.cursor = cursor;
+			this.collectionName = collectionName;
+			this.creationSite = creationSite;
+		}
+
+		String getCollectionName() {
+			return collectionName;
+		}
+
+		long getCreatedAt() {
+			return createdAt;
+		}
+
+		MongoCursor<?> getCursor() {
+			return cursor;
+		}
+
+		/**
+		 * Stops tracking a cursor that its owner closed.
+		 */
+		void closed() {
+			this.tracker.openCursors.remove(this);
+			this.clear();
+		}
+
+		/**
+		 * Called by the owner before it uses the cursor. Returns false if the cursor was killed, and must not be used.
+		 */
+		boolean enter() {
+			return this.state.compareAndSet(IDLE, IN_USE);
+		}
+
+		/**
+		 * Called by the owner after it used the cursor. Closes the cursor if it was killed meanwhile.
+		 */
+		void leave() {
+			if (!this.state.compareAndSet(IN_USE, IDLE) && this.state.compareAndSet(KILL_REQUESTED, KILLED))
+				closeQuietly(this.cursor);
+		}
+
+		/**
+		 * Closes the cursor from another thread than its owner's: right away if the owner is not using it, or else when
+		 * the owner is done with it.
+		 */
+		void kill() {
+			while (true) {
+				int state = this.state.get();
+				if (state == IDLE && this.state.compareAndSet(IDLE, KILLED)) {
+					closeQuietly(this.cursor);
+					return;
+				}
+				if (state == IN_USE && this.state.compareAndSet(IN_USE, KILL_REQUESTED) || state >= KILL_REQUESTED)
+					return;
+			}
+		}
+	}
+
+	private static void closeQuietly(MongoCursor<?> cursor) {
+		try {
+			cursor.close();
+		} catch (RuntimeException e) {
+			LOG.debug("Could not close cursor", e);
+		}
+	}
+
+	/**
+	 * Tracks the cursor of owner, normally a result set, until the owner reports it closed or becomes unreachable.
+	 */
+	TrackedCursor register(Object owner, MongoCursor<?> cursor, String collectionName) {
+		Throwable creationSite = this.captureCreationSite ? new Throwable("Cursor opened here") : null;
+		TrackedCursor tracked = new TrackedCursor(this, owner, cursor, collectionName, creationSite);
+		this.openCursors.add(tracked);
+		this.openedCount.incrementAndGet();
+		return tracked;
+	}
+
+	Set<TrackedCursor> getTrackedCursors() {
+		return this.openCursors;
+	}
+
+	private static void reapLeakedCursors() {
+		while (true) {
+			try {
+				TrackedCursor leaked = (TrackedCursor) UNREACHABLE.remove();
+				MongodbCursorTracker tracker = leaked.tracker;
+				if (tracker.openCursors.remove(leaked)) {
+					tracker.leakedCount.incrementAndGet();
+					if (leaked.creationSite != null) {
+						LOG.warn("Closing cursor on " + leaked.collectionName + " of a result set that was not closed", leaked.creationSite);
+					} else {
+						LOG.warn("Closing cursor on " + leaked.collectionName + " of a result set that was not closed. Set captureCursorCreationSite=true to see where it was opened.");
+					}
+					leaked.cursor.close();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException e) {
+				LOG.debug("Could not close leaked cursor", e);
+			}
+		}
+	}
+
+	/**
+	 * Closes the cursors of the connection that are still open, e.g. because the connection is closing.
+	 */
+	void closeAll() {
+		for (TrackedCursor tracked : this.openCursors) {
+			tracked.closed();
+			tracked.kill();
+		}
+	}
+
+	/**
+	 * Closes the cursors that have been open for at least ageMillis, on behalf of an operator. Returns how many. A
+	 * cursor that its result set is reading from is closed once the read returns, and the result set fails on its next
+	 * call to next.
+	 */
+	int closeOlderThan(long ageMillis) {
+		long now = System.currentTimeMillis();
+		int closed = 0;
+		for (TrackedCursor tracked : this.openCursors) {
+			if (now - tracked.createdAt >= ageMillis) {
+				tracked.closed();
+				tracked.kill();
+				LOG.info("Killed cursor on " + tracked.collectionName + " after " + (now - tracked.createdAt) + " ms");
+				closed++;
+			}
+		}
+		return closed;
+	}
+
+	public int getOpenCursorCount() {
+		return this.openCursors.size();
+	}
+
+	public long getOpenedCursorCount() {
+		return this.openedCount.get();
+	}
+
+	/**
+	 * The number of cursors closed because their result set was garbage collected without being closed.
+	 */
+	public long getLeakedCursorCount() {
+		return this.leakedCount.get();
+	}
+
+	public boolean isCaptureCreationSite() {
+		return this.captureCreationSite;
+	}
+
+	/**
+	 * Debug option, also set with the captureCursorCreationSite connection property. Records a stack trace for every
+	 * cursor, so that leak warnings show where the leaked result set was created.
+	 */
+	public void setCaptureCreationSite(boolean captureCreationSite) {
+		this.captureCreationSite = captureCreationSite;
+	}
+
+}
@@ -15,24 +15,48 @@
  */
 package io.dirigible.mongodb.jdbc;
 
+import io.dirigible.mongodb.jdbc.util.ListMongoIterable;
+
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.RowIdLifetime;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+
+import com.mongodb.client.MongoDatabase;
 
 public class MongodbDatabaseMetadata implements DatabaseMetaData {
 
 	private String dbProductName;
 	private String dbProductVersion;
 	private String url;
-	private boolean isReadOnly;
 	private String driverVersion;
 	private int driverMajorVersion;
 	private int driverMinorVersion;
 	private ResultSet schemas;
-	private ResultSet tables;
 	private String driverName;
+	private MongodbConnection connection;
 
 	@SuppressWarnings("unchecked")
 	@Override
@@ -75,13 +99,12 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 		return null;
 	}
 
+	/**
+	 * Whether the connection is read-only, asking nothing of the server.
+	 */
 	@Override
 	public boolean isReadOnly() throws SQLException {
-		return this.isReadOnly;
-	}
-	
-	void setIsReadOnly(boolean isReadOnly) throws SQLException {
-		this.isReadOnly = isReadOnly;
+		return this.connection.isReadOnly();
 	}
 
 	@Override
@@ -800,13 +823,66 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 
 	@Override
 	public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types) throws SQLException {
-		//we ignore catalog (not valid in mongodb) and schema pattern (not implemented)
-		return this.tables;
+		//we ignore schema pattern (not implemented)
+		MongoDatabase db = this.catalogDb(catalog);
+		BsonDocument filter = nameFilter(tableNamePattern);
+		if (types != null) {
+			BsonArray collectionTypes = new BsonArray();
+			for (String type : types) {
+				String collectionType = collectionType(type);
+				if (collectionType != null && !collectionTypes.contains(new BsonString(collectionType)))
+					collectionTypes.add(new BsonString(collectionType));
+			}
+			filter.append("type", new BsonDocument("$in", collectionTypes));
+		}
+		String dbName = db.getName();
+		List<Document> rows = new ArrayList<Document>();
+		for (BsonDocument collection : this.connection.getCollections(db, filter)) {
+			String name = collection.getString("name").getValue();
+			String type = tableType(collection.getString("type", new BsonString("collection")).getValue(), name);
+			if (types != null && !Arrays.asList(types).contains(type))
+				continue;
+			BsonDocument options = collection.getDocument("options", new BsonDocument());
+			rows.add(new Document("TABLE_CAT", dbName)
+					.append("TABLE_SCHEM", null)
+					.append("TABLE_NAME", name)
+					.append("TABLE_TYPE", type)
+					.append("REMARKS", options.isString("viewOn") ? "view on " + options.getString("viewOn").getValue() : null)
+					.append("TYPE_CAT", null)
+					.append("TYPE_SCHEM", null)
+					.append("TYPE_NAME", null)
+					.append("SELF_REFERENCING_COL_NAME", null)
+					.append("REF_GENERATION", null));
+		}
+		//ordered by TABLE_TYPE and TABLE_NAME, as JDBC asks
+		rows.sort((a, b) -> {
+			int byType = a.getString("TABLE_TYPE").compareTo(b.getString("TABLE_TYPE"));
+			return byType != 0 ? byType : a.getString("TABLE_NAME").compareTo(b.getString("TABLE_NAME"));
+		});
+		return this.toResultSet(rows);
+	}
+	
+	/**
+	 * The JDBC table type of a collection of a listCollections type.
+	 */
+	private static String tableType(String collectionType, String name) {
+		switch (collectionType) {
+		case "view": return "VIEW";
+		case "timeseries": return "TIMESERIES";
+		default: return name.startsWith("system.") ? "SYSTEM TABLE" : "TABLE";
+		}
 	}
 	
-	void setTables(ResultSet tables) throws SQLException {
-		//we ignore catalog (not valid in mongodb) and schema pattern (not implemented)
-		this.tables = tables;
+	/**
+	 * The listCollections type of a JDBC table type, or null for a type MongoDB does not have.
+	 */
+	private static String collectionType(String tableType) {
+		switch (tableType) {
+		case "TABLE": case "SYSTEM TABLE": return "collection";
+		case "VIEW": return "view";
+		case "TIMESERIES": return "timeseries";
+		default: return null;
+		}
 	}
 
 	@Override
@@ -816,22 +892,153 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 
 	@Override
 	public ResultSet getCatalogs() throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		List<Document> rows = new ArrayList<Document>();
+		for (String dbName : this.connection.getDatabaseNames()) {
+			rows.add(new Document("TABLE_CAT", dbName));
+		}
+		return this.toResultSet(rows);
 	}
 
 	@Override
 	public ResultSet getTableTypes() throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		List<Document> rows = new ArrayList<Document>();
+		for (String type : new String[]{"SYSTEM TABLE", "TABLE", "TIMESERIES", "VIEW"}) {
+			rows.add(new Document("TABLE_TYPE", type));
+		}
+		return this.toResultSet(rows);
 	}
 
+	/**
+	 * Columns inferred from a <code>$sample</code> of each matching collection and its <code>$jsonSchema</code> validator,
+	 * see MongodbSchemaInference. Schemas are cached by the shared client for the metadataCacheTtl of the connection,
+	 * and collections are sampled concurrently.
+	 */
 	@Override
 	public ResultSet getColumns(String catalog, String schemaPattern,
 			String tableNamePattern, String columnNamePattern)
 			throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		Pattern columnPattern = likePattern(columnNamePattern);
+		MongoDatabase db = this.catalogDb(catalog);
+		String dbName = db.getName();
+		Map<String, List<MongodbSchemaInference.Column>> schemas = this.forEachCollection(this.collectionNames(db, tableNamePattern), name -> this.connection.getColumns(db, name));
+		List<Document> rows = new ArrayList<Document>();
+		for (Map.Entry<String, List<MongodbSchemaInference.Column>> schema : schemas.entrySet()) {
+			int position = 0;
+			for (MongodbSchemaInference.Column column : schema.getValue()) {
+				position++;
+				if (columnPattern != null && !columnPattern.matcher(column.name).matches())
+					continue;
+				int sqlType = MongodbResultSetMetaData.getSqlType(column.type);
+				String typeName = MongodbResultSetMetaData.getSqlTypeName(column.type);
+				rows.add(new Document("TABLE_CAT", dbName)
+						.append("TABLE_SCHEM", null)
+						.append("TABLE_NAME", schema.getKey())
+						.append("COLUMN_NAME", column.name)
+						.append("DATA_TYPE", sqlType != Integer.MIN_VALUE ? sqlType : Types.OTHER)
+						.append("TYPE_NAME", typeName != null ? typeName : column.type.name())
+						.append("COLUMN_SIZE", null)
+						.append("BUFFER_LENGTH", null)
+						.append("DECIMAL_DIGITS", null)
+						.append("NUM_PREC_RADIX", 10)
+						.append("NULLABLE", column.nullable)
+						.append("REMARKS", column.isDeclared ? "$jsonSchema" : "sampled")
+						.append("COLUMN_DEF", null)
+						.append("SQL_DATA_TYPE", null)
+						.append("SQL_DATETIME_SUB", null)
+						.append("CHAR_OCTET_LENGTH", null)
+						.append("ORDINAL_POSITION", position)
+						.append("IS_NULLABLE", column.nullable == columnNullable ? "YES" : column.nullable == columnNoNulls ? "NO" : "")
+						.append("SCOPE_CATALOG", null)
+						.append("SCOPE_SCHEMA", null)
+						.append("SCOPE_TABLE", null)
+						.append("SOURCE_DATA_TYPE", null)
+						.append("IS_AUTOINCREMENT", "NO")
+						.append("IS_GENERATEDCOLUMN", "NO"));
+			}
+		}
+		return this.toResultSet(rows);
+	}
+	
+	/**
+	 * The names of the collections of a database that match a JDBC name pattern, in name order. System collections are
+	 * left out.
+	 */
+	List<String> collectionNames(MongoDatabase db, String tableNamePattern) {
+		List<String> names = new ArrayList<String>();
+		for (BsonDocument collection : this.connection.getCollections(db, nameFilter(tableNamePattern))) {
+			String name = collection.getString("name").getValue();
+			if (!name.startsWith("system."))
+				names.add(name);
+		}
+		Collections.sort(names);
+		return names;
+	}
+	
+	/**
+	 * A listCollections filter on the names that match a JDBC name pattern, so that the server leaves the others out.
+	 */
+	static BsonDocument nameFilter(String tableNamePattern) {
+		Pattern pattern = likePattern(tableNamePattern);
+		return pattern == null ? new BsonDocument() : new BsonDocument("name", new BsonRegularExpression("^" + pattern.pattern() + "$"));
+	}
+	
+	/**
+	 * Translates a JDBC name pattern, where % stands for any characters and _ for one, to a regular expression. Null
+	 * and % match everything and give null.
+	 */
+	static Pattern likePattern(String pattern) {
+		if (pattern == null || "%".equals(pattern))
+			return null;
+		StringBuilder regex = new StringBuilder();
+		for (char c : pattern.toCharArray()) {
+			if (c == '%')
+				regex.append(".*");
+			else if (c == '_')
+				regex.append('.');
+			else
+				regex.append(Pattern.quote(String.valueOf(c)));
+		}
+		return Pattern.compile(regex.toString());
+	}
+	
+	/**
+	 * Applies a metadata read to every collection, by at most metadataConcurrency threads of the connection at a time.
+	 * The results are in the order of the collection names.
+	 */
+	<T> Map<String, T> forEachCollection(List<String> collectionNames, Function<String, T> read) throws SQLException {
+		Map<String, T> results = new LinkedHashMap<String, T>();
+		if (collectionNames.size() == 1) {
+			results.put(collectionNames.get(0), read.apply(collectionNames.get(0)));
+			return results;
+		}
+		ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<String>(collectionNames);
+		Map<String, T> done = new ConcurrentHashMap<String, T>();
+		List<CompletableFuture<Void>> workers = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < Math.min(this.connection.getMetadataConcurrency(), collectionNames.size()); i++) {
+			workers.add(CompletableFuture.runAsync(() -> {
+				for (String name = pending.poll(); name != null; name = pending.poll()) {
+					done.put(name, read.apply(name));
+				}
+			}, this.connection.getExecutor()));
+		}
+		try {
+			CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[workers.size()])).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while reading collection metadata", e);
+		} catch (ExecutionException e) {
+			throw new SQLException("Could not read collection metadata", e.getCause());
+		}
+		for (String name : collectionNames) {
+			results.put(name, done.get(name));
+		}
+		return results;
+	}
+	
+	private ResultSet toResultSet(List<Document> rows) throws SQLException {
+		Statement statement = this.connection.createStatement();
+		statement.closeOnCompletion();
+		return new MongodbResultSet(statement, new ListMongoIterable<Document>(rows), null);
 	}
 
 	@Override
@@ -865,8 +1072,25 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 	@Override
 	public ResultSet getPrimaryKeys(String catalog, String schema, String table)
 			throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		MongoDatabase db = this.catalogDb(catalog);
+		String dbName = db.getName();
+		Map<String, List<BsonDocument>> indexes = this.forEachCollection(this.indexedCollectionNames(db, table), name -> this.connection.getIndexes(db, name));
+		List<Document> rows = new ArrayList<Document>();
+		for (Map.Entry<String, List<BsonDocument>> collectionIndexes : indexes.entrySet()) {
+			for (BsonDocument index : collectionIndexes.getValue()) {
+				BsonDocument key = index.getDocument("key", new BsonDocument());
+				if (key.size() == 1 && key.containsKey("_id") && !index.containsKey("partialFilterExpression")) {
+					rows.add(new Document("TABLE_CAT", dbName)
+							.append("TABLE_SCHEM", null)
+							.append("TABLE_NAME", collectionIndexes.getKey())
+							.append("COLUMN_NAME", "_id")
+							.append("KEY_SEQ", (short) 1)
+							.append("PK_NAME", index.getString("name").getValue()));
+					break;
+				}
+			}
+		}
+		return this.toResultSet(rows);
 	}
 
 	@Override
@@ -900,8 +1124,85 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 	@Override
 	public ResultSet getIndexInfo(String catalog, String schema, String table,
 			boolean unique, boolean approximate) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		MongoDatabase db = this.catalogDb(catalog);
+		String dbName = db.getName();
+		Map<String, List<BsonDocument>> indexes = this.forEachCollection(this.indexedCollectionNames(db, table), name -> this.connection.getIndexes(db, name));
+		List<Document> rows = new ArrayList<Document>();
+		for (Map.Entry<String, List<BsonDocument>> collectionIndexes : indexes.entrySet()) {
+			List<Document> collectionRows = new ArrayList<Document>();
+			for (BsonDocument index : collectionIndexes.getValue()) {
+				BsonDocument key = index.getDocument("key", new BsonDocument());
+				//the _id index is unique without saying so
+				boolean isUnique = isSet(index, "unique") || (key.size() == 1 && key.containsKey("_id"));
+				if (unique && !isUnique)
+					continue;
+				short position = 0;
+				for (Map.Entry<String, BsonValue> field : key.entrySet()) {
+					position++;
+					BsonValue direction = field.getValue();
+					collectionRows.add(new Document("TABLE_CAT", dbName)
+							.append("TABLE_SCHEM", null)
+							.append("TABLE_NAME", collectionIndexes.getKey())
+							.append("NON_UNIQUE", !isUnique)
+							.append("INDEX_QUALIFIER", dbName)
+							.append("INDEX_NAME", index.getString("name").getValue())
+							.append("TYPE", "hashed".equals(direction.isString() ? direction.asString().getValue() : null) ? tableIndexHashed : tableIndexOther)
+							.append("ORDINAL_POSITION", position)
+							.append("COLUMN_NAME", field.getKey())
+							.append("ASC_OR_DESC", direction.isNumber() ? (direction.asNumber().doubleValue() < 0 ? "D" : "A") : null)
+							.append("CARDINALITY", 0L)
+							.append("PAGES", 0L)
+							.append("FILTER_CONDITION", index.isDocument("partialFilterExpression") ? index.getDocument("partialFilterExpression").toJson() : null)
+							//MongoDB index attributes beyond the standard columns
+							.append("SPARSE", isSet(index, "sparse"))
+							.append("EXPIRE_AFTER_SECONDS", index.isNumber("expireAfterSeconds") ? index.getNumber("expireAfterSeconds").longValue() : null)
+							.append("INDEX_TYPE", direction.isString() ? direction.asString().getValue() : null));
+				}
+			}
+			//ordered by NON_UNIQUE, TYPE, INDEX_NAME and ORDINAL_POSITION, as JDBC asks
+			collectionRows.sort((a, b) -> {
+				int byUnique = Boolean.compare(a.getBoolean("NON_UNIQUE"), b.getBoolean("NON_UNIQUE"));
+				if (byUnique != 0)
+					return byUnique;
+				int byType = Short.compare((Short) a.get("TYPE"), (Short) b.get("TYPE"));
+				if (byType != 0)
+					return byType;
+				int byName = a.getString("INDEX_NAME").compareTo(b.getString("INDEX_NAME"));
+				return byName != 0 ? byName : Short.compare((Short) a.get("ORDINAL_POSITION"), (Short) b.get("ORDINAL_POSITION"));
+			});
+			rows.addAll(collectionRows);
+		}
+		return this.toResultSet(rows);
+	}
+	
+	/**
+	 * Whether an index option is set. Servers keep options as given, so unique may be 1 as well as true.
+	 */
+	private static boolean isSet(BsonDocument index, String option) {
+		BsonValue value = index.get(option);
+		return value != null && (value.isBoolean() ? value.asBoolean().getValue() : value.isNumber() && value.asNumber().doubleValue() != 0);
+	}
+	
+	/**
+	 * The document count, data size, storage size and index sizes of a collection of the current catalog, cached for
+	 * collStatsCacheTtl milliseconds, or null for a view.
+	 */
+	public MongodbCollectionStats getCollectionStats(String collectionName) throws SQLException {
+		return this.connection.getCollectionStats(this.connection.getMongoDb(), collectionName);
+	}
+	
+	/**
+	 * The collection a getIndexInfo or getPrimaryKeys table names, or all collections if it names none.
+	 */
+	private List<String> indexedCollectionNames(MongoDatabase db, String table) {
+		return table == null ? this.collectionNames(db, null) : Collections.singletonList(table);
+	}
+	
+	/**
+	 * The database a catalog argument names. Null and "" stand for the current catalog of the connection.
+	 */
+	private MongoDatabase catalogDb(String catalog) {
+		return this.connection.getMongoDb(catalog == null || catalog.isEmpty() ? null : catalog);
 	}
 
 	@Override
@@ -986,8 +1287,11 @@ public class MongodbDatabaseMetadata implements DatabaseMetaData {
 
 	@Override
 	public Connection getConnection() throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		return this.connection;
+	}
+	
+	void setConnection(MongodbConnection connection) {
+		this.connection = connection;
 	}
 
 	@Override
@@ -0,0 +1,51 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.List;
+
+/**
+ * The connections, statements and cursors of the driver in this JVM as JMX shows them, with operations to free the
+ * ones that are left behind.
+ */
+public interface MongodbDriverMXBean {
+
+	int getClientCount();
+
+	int getConnectionCount();
+
+	int getStatementCount();
+
+	int getOpenCursorCount();
+
+	List<MongodbDriverMonitor.CursorInfo> getOpenCursors();
+
+	/**
+	 * Closes the connections that have no open cursor and have not been used for at least idleMillis. Returns how
+	 * many were closed. A connection pool that still holds one of them finds it closed: isValid returns false and
+	 * isClosed true, so pools that validate connections before handing them out replace it, and others hand it out
+	 * closed.
+	 */
+	int closeIdleConnections(long idleMillis);
+
+	/**
+	 * Closes the cursors that have been open for at least ageMillis, which kills them on the server. Returns how many
+	 * were closed. A result set whose cursor was killed fails on its next call to next; one that is reading from its
+	 * cursor at the time closes it once the read returns.
+	 */
+	int killCursors(long ageMillis);
+
+}
@@ -0,0 +1,170 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the open connections of the driver in this JVM for its MBean,
+ * <code>io.dirigible.mongodb.jdbc:type=Driver</code>, registered by the first connection with the jmx property set.
+ * Connections are held weakly, so that the ones that are never closed can still be reclaimed.
+ */
+public class MongodbDriverMonitor implements MongodbDriverMXBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbDriverMonitor.class);
+
+	private static final MongodbDriverMonitor INSTANCE = new MongodbDriverMonitor();
+
+	private final Set<MongodbConnection> connections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<MongodbConnection, Boolean>()));
+	private boolean isRegistered;
+
+	/**
+	 * An open cursor: its collection and how long it has been open.
+	 */
+	public static class CursorInfo {
+
+		private final String collection;
+		private final long ageMillis;
+
+		@ConstructorProperties({"collection", "ageMillis"})
+		public CursorInfo(String collection, long ageMillis) {
+			this.collection = collection;
+			this.ageMillis = ageMillis;
+		}
+
+		public String getCollection() {
+			return this.collection;
+		}
+
+		public long getAgeMillis() {
+			return this.ageMillis;
+		}
+
+	}
+
+	public static MongodbDriverMonitor getInstance() {
+		return INSTANCE;
+	}
+
+	void opened(MongodbConnection connection) {
+		this.connections.add(connection);
+	}
+
+	void closed(MongodbConnection connection) {
+		this.connections.remove(connection);
+	}
+
+	/**
+	 * Registers the MBean of the driver, unless it is registered already.
+	 */
+	synchronized void register() {
+		if (this.isRegistered)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, MongodbDriverMXBean.class, true), new ObjectName("io.dirigible.mongodb.jdbc:type=Driver"));
+			this.isRegistered = true;
+		} catch (JMException e) {
+			LOG.warn("Could not register the driver with JMX", e);
+		}
+	}
+
+	private List<MongodbConnection> snapshot() {
+		synchronized (this.connections) {
+			return new ArrayList<MongodbConnection>(this.connections);
+		}
+	}
+
+	@Override
+	public int getClientCount() {
+		return MongodbSharedClient.getClientCount();
+	}
+
+	@Override
+	public int getConnectionCount() {
+		return this.connections.size();
+	}
+
+	@Override
+	public int getStatementCount() {
+		int count = 0;
+		for (MongodbConnection connection : this.snapshot()) {
+			count += connection.getOpenStatementCount();
+		}
+		return count;
+	}
+
+	@Override
+	public int getOpenCursorCount() {
+		int count = 0;
+		for (MongodbConnection connection : this.snapshot()) {
+			count += connection.getCursorTracker().getOpenCursorCount();
+		}
+		return count;
+	}
+
+	@Override
+	public List<CursorInfo> getOpenCursors() {
+		long now = System.currentTimeMillis();
+		List<CursorInfo> cursors = new ArrayList<CursorInfo>();
+		for (MongodbConnection connection : this.snapshot()) {
+			for (MongodbCursorTracker.TrackedCursor cursor : connection.getCursorTracker().getTrackedCursors()) {
+				cursors.add(new CursorInfo(cursor.getCollectionName(), now - cursor.getCreatedAt()));
+			}
+		}
+		return cursors;
+	}
+
+	@Override
+	public int closeIdleConnections(long idleMillis) {
+		long now = System.currentTimeMillis();
+		int closed = 0;
+		for (MongodbConnection connection : this.snapshot()) {
+			if (now - connection.getLastUsedTime() >= idleMillis && connection.getCursorTracker().getOpenCursorCount() == 0) {
+				try {
+					connection.close();
+					closed++;
+				} catch (SQLException e) {
+					LOG.warn("Could not close idle connection", e);
+				}
+			}
+		}
+		return closed;
+	}
+
+	@Override
+	public int killCursors(long ageMillis) {
+		int killed = 0;
+		for (MongodbConnection connection : this.snapshot()) {
+			killed += connection.getCursorTracker().closeOlderThan(ageMillis);
+		}
+		return killed;
+	}
+
+}
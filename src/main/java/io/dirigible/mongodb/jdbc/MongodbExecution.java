@@ -0,0 +1,130 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import org.bson.BsonDocument;
+
+/**
+ * One execution of a statement, from executeQuery until its result set is closed or for the duration of an
+ * executeUpdate, and the server commands the driver ran for it, see MongodbCommandListener. Used by one thread at a time.
+ */
+class MongodbExecution {
+
+	private final String collection;
+	private final BsonDocument spec;
+	private final boolean isCommand;
+	private final MongodbQueryMetrics metrics;
+	private final MongodbCommandStats stats;
+	private int shapeHash;
+	private long wallNanos;
+	private long serverNanos;
+	private long replyBytes;
+	private int commands;
+	private int failedCommands;
+	private int getMores;
+	private boolean isFinished;
+	private boolean isDelegated;
+	private Object getMoreEvent;
+
+	/**
+	 * spec is the query specification, or the update command if isCommand. metrics may be null, when metrics are turned
+	 * off for the connection.
+	 */
+	MongodbExecution(String collection, BsonDocument spec, boolean isCommand, MongodbQueryMetrics metrics, MongodbCommandStats stats) {
+		this.collection = collection;
+		this.spec = spec;
+		this.isCommand = isCommand;
+		this.metrics = metrics;
+		this.stats = stats;
+	}
+
+	String getCollection() {
+		return this.collection;
+	}
+
+	/**
+	 * The hash code of the query shape, see MongodbQueryShape and MongodbQueryMetrics.getShape.
+	 */
+	int getShapeHash() {
+		if (this.shapeHash == 0)
+			this.shapeHash = (this.isCommand ? MongodbQueryShape.ofCommand(this.spec) : MongodbQueryShape.of(this.spec)).hashCode();
+		return this.shapeHash;
+	}
+
+	long getReplyBytes() {
+		return this.replyBytes;
+	}
+
+	MongodbQueryMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	void started(String commandName) {
+		if ("getMore".equals(commandName))
+			this.getMoreEvent = MongodbFlightRecorder.beginGetMore();
+	}
+
+	void replied(String commandName, long nanos, BsonDocument reply, long bytes) {
+		this.commands++;
+		this.serverNanos += nanos;
+		this.replyBytes += bytes;
+		if ("getMore".equals(commandName)) {
+			this.getMores++;
+			if (this.getMoreEvent != null) {
+				MongodbFlightRecorder.endGetMore(this.getMoreEvent, this, reply, bytes);
+				this.getMoreEvent = null;
+			}
+		}
+	}
+
+	void failed(long nanos) {
+		this.getMoreEvent = null;
+		this.commands++;
+		this.failedCommands++;
+		this.serverNanos += nanos;
+	}
+
+	/**
+	 * Marks the execution as waiting for commands that other threads run, such as the write coalescer, the point lookup
+	 * loader or parallel scan workers. Those commands are not attributed to it, so its time is not split into server
+	 * and client time.
+	 */
+	void delegated() {
+		this.isDelegated = true;
+	}
+
+	/**
+	 * Adds time the statement or its result set spent in the driver, server round trips included.
+	 */
+	void spent(long nanos) {
+		this.wallNanos += nanos;
+	}
+
+	/**
+	 * Adds the execution to the statistics of its statement and the metrics of its query shape, once.
+	 */
+	void finish() {
+		if (this.isFinished)
+			return;
+		this.isFinished = true;
+		//the round trips of other threads would otherwise count as client time
+		long clientNanos = this.isDelegated ? 0 : Math.max(0, this.wallNanos - this.serverNanos);
+		this.stats.add(this.commands, this.failedCommands, this.serverNanos, clientNanos, this.replyBytes);
+		if (this.metrics != null && !this.isDelegated)
+			this.metrics.commands(this.serverNanos, clientNanos, this.replyBytes, this.getMores);
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+
+/**
+ * Translates query specifications to explain commands and flattens the plans that come back into rows.
+ */
+class MongodbExplain {
+
+	static final String DEFAULT_VERBOSITY = "executionStats";
+
+	private MongodbExplain(){}
+
+	/**
+	 * Builds the explain command for a find or aggreg specification, as accepted by MongodbStatement.executeQuery.
+	 */
+	static BsonDocument toExplainCommand(BsonDocument spec, String collectionName, String verbosity){
+		BsonDocument explained;
+		if(spec.containsKey("aggreg")){
+			explained = new BsonDocument("aggregate", new BsonString(collectionName))
+					.append("pipeline", spec.getArray("aggreg"))
+					.append("cursor", new BsonDocument());
+		} else {
+			explained = new BsonDocument("find", new BsonString(collectionName));
+			if(spec.containsKey("filter"))
+				explained.append("filter", spec.getDocument("filter"));
+			if(spec.containsKey("sort"))
+				explained.append("sort", spec.getDocument("sort"));
+			if(spec.containsKey("limit"))
+				explained.append("limit", spec.get("limit"));
+			if(spec.containsKey("batchSize"))
+				explained.append("batchSize", spec.get("batchSize"));
+		}
+		return new BsonDocument("explain", explained).append("verbosity", new BsonString(verbosity != null ? verbosity : DEFAULT_VERBOSITY));
+	}
+
+	/**
+	 * Flattens the winning plan of an explain response into one row per stage, from the root stage down. When the
+	 * response has execution statistics, the executed stages are used, since they carry the examined keys and documents.
+	 */
+	static List<Document> planStages(Document explain){
+		List<Document> rows = new ArrayList<Document>();
+		Document root = explain;
+		//aggregations report the plan of their $cursor stage
+		if(explain.get("stages") instanceof List){
+			for(Object stage: (List<?>) explain.get("stages")){
+				if(stage instanceof Document && ((Document) stage).get("$cursor") instanceof Document){
+					root = (Document) ((Document) stage).get("$cursor");
+					break;
+				}
+			}
+		}
+		Document executionStats = (Document) root.get("executionStats");
+		Document queryPlanner = (Document) root.get("queryPlanner");
+		if(executionStats!=null && executionStats.get("executionStages") instanceof Document){
+			addStages(rows, (Document) executionStats.get("executionStages"), 0);
+			if(!rows.isEmpty() && executionStats.get("executionTimeMillis")!=null)
+				rows.get(0).put("executionTimeMillis", executionStats.get("executionTimeMillis"));
+		} else if(queryPlanner!=null && queryPlanner.get("winningPlan") instanceof Document){
+			addStages(rows, (Document) queryPlanner.get("winningPlan"), 0);
+		}
+		return rows;
+	}
+
+	private static void addStages(List<Document> rows, Document stage, int depth){
+		Document row = new Document("stage", stage.getString("stage"))
+				.append("depth", depth)
+				.append("indexName", stage.get("indexName"))
+				.append("keyPattern", stage.get("keyPattern") instanceof Document ? ((Document) stage.get("keyPattern")).toJson() : null)
+				.append("keysExamined", stage.get("keysExamined"))
+				.append("docsExamined", stage.get("docsExamined"))
+				.append("nReturned", stage.get("nReturned"))
+				.append("executionTimeMillis", stage.get("executionTimeMillisEstimate"));
+		rows.add(row);
+		if(stage.get("inputStage") instanceof Document)
+			addStages(rows, (Document) stage.get("inputStage"), depth + 1);
+		if(stage.get("inputStages") instanceof List){
+			for(Object input: (List<?>) stage.get("inputStages")){
+				addStages(rows, (Document) input, depth + 1);
+			}
+		}
+		//sharded plans list the winning plan of every shard
+		if(stage.get("shards") instanceof List){
+			for(Object shard: (List<?>) stage.get("shards")){
+				Document shardPlan = (Document) shard;
+				Object shardStages = shardPlan.get("executionStages") != null ? shardPlan.get("executionStages") : shardPlan.get("winningPlan");
+				if(shardStages instanceof Document)
+					addStages(rows, (Document) shardStages, depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * The collection scan stages of a flattened plan.
+	 */
+	static List<Document> collectionScans(List<Document> stages){
+		List<Document> scans = new ArrayList<Document>();
+		for(Document stage: stages){
+			if("COLLSCAN".equals(stage.getString("stage")))
+				scans.add(stage);
+		}
+		return scans;
+	}
+
+}
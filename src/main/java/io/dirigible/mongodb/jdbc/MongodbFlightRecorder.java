@@ -0,0 +1,76 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import org.bson.BsonDocument;
+
+/**
+ * JDK Flight Recorder events of the driver: statement executions, getMore round trips, result sets from execution to
+ * close, batches and metadata fetches. A begin method returns the started event, or null if it is not recorded, and
+ * the matching end method commits it if it took longer than the threshold of its recording settings.
+ * <p>
+ * This is the version for Java 8, which records nothing. On Java 11 and later, the multi-release jar replaces it with
+ * the version in src/main/java11.
+ */
+final class MongodbFlightRecorder {
+
+	private MongodbFlightRecorder(){}
+
+	static Object beginExecute() {
+		return null;
+	}
+
+	/**
+	 * rows is the update count of an update, and 0 for a query, whose rows are counted when its result set is closed.
+	 */
+	static void endExecute(Object event, MongodbExecution execution, long rows) {
+	}
+
+	static Object beginGetMore() {
+		return null;
+	}
+
+	static void endGetMore(Object event, MongodbExecution execution, BsonDocument reply, long bytes) {
+	}
+
+	static Object beginResultSet() {
+		return null;
+	}
+
+	static void endResultSet(Object event, MongodbExecution execution, long rows) {
+	}
+
+	static Object beginBatch() {
+		return null;
+	}
+
+	/**
+	 * collection is the collection all commands of the batch name, or an empty string if they name several.
+	 */
+	static void endBatch(Object event, String collection, int statements, long rows, long bytes) {
+	}
+
+	static Object beginMetadata() {
+		return null;
+	}
+
+	/**
+	 * value is what was fetched, whose rows are counted if it is a collection or map.
+	 */
+	static void endMetadata(Object event, String kind, String namespace, Object value) {
+	}
+
+}
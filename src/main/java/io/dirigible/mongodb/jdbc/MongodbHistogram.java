@@ -0,0 +1,135 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values, such as durations in nanoseconds. Values below 16 have a bucket each;
+ * above, every power of two is split into 8 linear buckets, so that percentiles are off by at most 12.5% at any scale
+ * with a fixed 488 buckets. Like a LongAdder, the buckets start as a single stripe and get more stripes, up to the
+ * number of processors, when threads recording at the same time collide.
+ */
+public class MongodbHistogram {
+
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKETS = 8;
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+	private static final int MAX_STRIPES = Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+	private volatile AtomicLongArray[] stripes = { new AtomicLongArray(BUCKET_COUNT) };
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	void record(long value) {
+		if (value < 0)
+			value = 0;
+		int bucket = bucket(value);
+		AtomicLongArray[] stripes = this.stripes;
+		AtomicLongArray stripe = stripes[stripe(stripes.length)];
+		long current = stripe.get(bucket);
+		if (!stripe.compareAndSet(bucket, current, current + 1)) {
+			stripe.incrementAndGet(bucket);
+			this.grow(stripes);
+		}
+		this.count.increment();
+		this.sum.add(value);
+		this.max.accumulate(value);
+	}
+
+	/**
+	 * The stripe of the current thread among length stripes, a power of two.
+	 */
+	private static int stripe(int length) {
+		return (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32) & (length - 1);
+	}
+
+	/**
+	 * Doubles the stripes after a collision on stripes, unless another thread did already or there are enough.
+	 */
+	private synchronized void grow(AtomicLongArray[] stripes) {
+		if (this.stripes != stripes || stripes.length >= MAX_STRIPES)
+			return;
+		AtomicLongArray[] grown = new AtomicLongArray[stripes.length * 2];
+		System.arraycopy(stripes, 0, grown, 0, stripes.length);
+		for (int stripe = stripes.length; stripe < grown.length; stripe++) {
+			grown[stripe] = new AtomicLongArray(BUCKET_COUNT);
+		}
+		this.stripes = grown;
+	}
+
+	static int bucket(long value) {
+		if (value < LINEAR_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * The smallest value that falls into a bucket.
+	 */
+	static long lowerBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS)
+			return bucket;
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << (exponent - 3);
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getSum() {
+		return this.sum.sum();
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	public double getMean() {
+		long count = this.getCount();
+		return count > 0 ? (double) this.getSum() / count : 0;
+	}
+
+	/**
+	 * The value below which the given fraction of the recorded values fall, e.g. 0.99 for the 99th percentile, as the
+	 * upper bound of the bucket it falls in. 0 if nothing was recorded.
+	 */
+	public long getPercentile(double fraction) {
+		long count = this.getCount();
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		AtomicLongArray[] stripes = this.stripes;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			for (AtomicLongArray stripe : stripes) {
+				seen += stripe.get(bucket);
+			}
+			if (seen >= rank && seen > 0)
+				return Math.min(bucket + 1 < BUCKET_COUNT ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE, this.getMax());
+		}
+		return this.getMax();
+	}
+
+}
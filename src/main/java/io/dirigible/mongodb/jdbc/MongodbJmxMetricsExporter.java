@@ -0,0 +1,74 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the metrics of every query shape with the platform MBean server, as
+ * <code>io.dirigible.mongodb.jdbc:type=QueryMetrics,collection=...,shape=...</code> where shape is a hash of the
+ * shape, which is an attribute. Shapes whose hashes collide get the hash followed by -2, -3 and so on. Added by the
+ * metricsJmx connection property.
+ */
+public class MongodbJmxMetricsExporter implements MongodbMetricsExporter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbJmxMetricsExporter.class);
+
+	private static final MongodbJmxMetricsExporter INSTANCE = new MongodbJmxMetricsExporter();
+
+	private final Set<MongodbQueryMetrics> registered = Collections.newSetFromMap(new IdentityHashMap<MongodbQueryMetrics, Boolean>());
+
+	public static MongodbJmxMetricsExporter getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public synchronized void added(MongodbQueryMetrics metrics) {
+		//MongodbMetrics may announce the same metrics twice when the exporter is added while a shape is first executed
+		if (!this.registered.add(metrics))
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String hash = Integer.toHexString(metrics.getShape().hashCode());
+		try {
+			StandardMBean mbean = new StandardMBean(metrics, MongodbQueryMetricsMXBean.class, true);
+			for (int suffix = 1; ; suffix++) {
+				ObjectName name = new ObjectName("io.dirigible.mongodb.jdbc:type=QueryMetrics,collection=" + ObjectName.quote(metrics.getCollection())
+						+ ",shape=" + (suffix == 1 ? hash : hash + "-" + suffix));
+				try {
+					server.registerMBean(mbean, name);
+					return;
+				} catch (InstanceAlreadyExistsException e) {
+					//another shape with the same hash
+				}
+			}
+		} catch (JMException e) {
+			LOG.warn("Could not register query metrics of " + metrics.getCollection() + " with JMX", e);
+		}
+	}
+
+}
@@ -0,0 +1,481 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+
+/**
+ * Evaluates find specifications against documents held in memory, for the subset of the query language whose
+ * semantics it reproduces exactly: field equality, <code>$eq, $ne, $in, $nin, $gt, $gte, $lt, $lte, $exists</code>,
+ * <code>$and, $or, $nor</code>, dotted paths, sort and limit. Anything else is left to the server.
+ */
+class MongodbLocalQuery {
+
+	private static final Set<String> SPEC_KEYS = new HashSet<String>(Arrays.asList("find", "filter", "sort", "limit", "batchSize"));
+	private static final Set<String> OPERATORS = new HashSet<String>(Arrays.asList("$eq", "$ne", "$in", "$nin", "$gt", "$gte", "$lt", "$lte", "$exists"));
+
+	private MongodbLocalQuery(){}
+
+	/**
+	 * Whether a find specification can be answered locally.
+	 */
+	static boolean isSupported(BsonDocument spec) {
+		if (!SPEC_KEYS.containsAll(spec.keySet()) || !spec.containsKey("find"))
+			return false;
+		if (spec.containsKey("filter") && !(spec.isDocument("filter") && isSupportedQuery(spec.getDocument("filter"))))
+			return false;
+		if (spec.containsKey("sort") && !spec.isDocument("sort"))
+			return false;
+		return !spec.containsKey("limit") || spec.get("limit").isNumber();
+	}
+
+	private static boolean isSupportedQuery(BsonDocument query) {
+		for (String key : query.keySet()) {
+			BsonValue value = query.get(key);
+			if ("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) {
+				if (!value.isArray() || value.asArray().isEmpty())
+					return false;
+				for (BsonValue clause : value.asArray()) {
+					if (!clause.isDocument() || !isSupportedQuery(clause.asDocument()))
+						return false;
+				}
+			} else if (key.startsWith("$") || !isSupportedCondition(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSupportedCondition(BsonValue condition) {
+		if (!isOperatorDocument(condition))
+			return isPlainValue(condition);
+		for (String operator : condition.asDocument().keySet()) {
+			BsonValue operand = condition.asDocument().get(operator);
+			if (!OPERATORS.contains(operator))
+				return false;
+			if ("$exists".equals(operator))
+				continue;
+			if ("$in".equals(operator) || "$nin".equals(operator)) {
+				if (!operand.isArray())
+					return false;
+				for (BsonValue value : operand.asArray()) {
+					if (!isPlainValue(value))
+						return false;
+				}
+			} else if (!isPlainValue(operand) || (operand.isNull() && !"$eq".equals(operator) && !"$ne".equals(operator))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isOperatorDocument(BsonValue value) {
+		return value.isDocument() && !value.asDocument().isEmpty() && value.asDocument().getFirstKey().startsWith("$");
+	}
+
+	//arrays compare element-wise as well as whole, regular expressions match rather than compare, and values that are
+	//not ordered can only be found equal or not
+	private static boolean isPlainValue(BsonValue value) {
+		return !value.isArray() && isOrdered(value);
+	}
+
+	/**
+	 * Whether compare orders a value, and all values nested in it, exactly as the server does. Values of other types,
+	 * regular expressions, JavaScript and DBPointers, are only compared for equality.
+	 */
+	static boolean isOrdered(BsonValue value) {
+		switch (value.getBsonType()) {
+		case DOCUMENT:
+			for (BsonValue field : value.asDocument().values()) {
+				if (!isOrdered(field))
+					return false;
+			}
+			return true;
+		case ARRAY:
+			for (BsonValue element : value.asArray()) {
+				if (!isOrdered(element))
+					return false;
+			}
+			return true;
+		case REGULAR_EXPRESSION:
+		case JAVASCRIPT:
+		case JAVASCRIPT_WITH_SCOPE:
+		case DB_POINTER:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Runs a supported find specification over documents. Returns null if the documents turn out to need what is not
+	 * supported, such as sorting by an array field.
+	 */
+	static <T extends BsonDocument> List<T> execute(BsonDocument spec, Collection<T> documents) {
+		BsonDocument filter = spec.isDocument("filter") ? spec.getDocument("filter") : new BsonDocument();
+		List<T> matching = new ArrayList<T>();
+		for (T document : documents) {
+			if (matches(document, filter))
+				matching.add(document);
+		}
+		if (spec.containsKey("sort") && !spec.getDocument("sort").isEmpty()) {
+			BsonDocument sort = spec.getDocument("sort");
+			for (T document : matching) {
+				for (String field : sort.keySet()) {
+					//the server sorts by the least or greatest of several values
+					List<BsonValue> values = values(document, field);
+					if (values.size() > 1 || (values.size() == 1 && (values.get(0).isArray() || !isOrdered(values.get(0)))))
+						return null;
+				}
+			}
+			matching.sort((a, b) -> {
+				for (String field : sort.keySet()) {
+					int order = compare(sortValue(a, field), sortValue(b, field));
+					if (order != 0)
+						return sort.get(field).isNumber() && sort.getNumber(field).intValue() < 0 ? -order : order;
+				}
+				return 0;
+			});
+		}
+		int limit = spec.containsKey("limit") ? Math.abs(spec.getNumber("limit").intValue()) : 0;
+		if (limit > 0 && matching.size() > limit)
+			return new ArrayList<T>(matching.subList(0, limit));
+		return matching;
+	}
+
+	private static BsonValue sortValue(BsonDocument document, String field) {
+		List<BsonValue> values = values(document, field);
+		return values.isEmpty() ? BsonNull.VALUE : values.get(0);
+	}
+
+	static boolean matches(BsonDocument document, BsonDocument query) {
+		for (String key : query.keySet()) {
+			BsonValue value = query.get(key);
+			if ("$and".equals(key)) {
+				for (BsonValue clause : value.asArray()) {
+					if (!matches(document, clause.asDocument()))
+						return false;
+				}
+			} else if ("$or".equals(key) || "$nor".equals(key)) {
+				boolean any = false;
+				for (BsonValue clause : value.asArray()) {
+					if (matches(document, clause.asDocument())) {
+						any = true;
+						break;
+					}
+				}
+				if (any != "$or".equals(key))
+					return false;
+			} else if (!matchesCondition(values(document, key), value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesCondition(List<BsonValue> values, BsonValue condition) {
+		if (!isOperatorDocument(condition))
+			return equalsAny(values, condition);
+		BsonDocument operators = condition.asDocument();
+		for (String operator : operators.keySet()) {
+			BsonValue operand = operators.get(operator);
+			boolean matches;
+			switch (operator) {
+			case "$eq":
+				matches = equalsAny(values, operand);
+				break;
+			case "$ne":
+				matches = !equalsAny(values, operand);
+				break;
+			case "$in":
+			case "$nin":
+				matches = false;
+				for (BsonValue candidate : operand.asArray()) {
+					if (equalsAny(values, candidate)) {
+						matches = true;
+						break;
+					}
+				}
+				if ("$nin".equals(operator))
+					matches = !matches;
+				break;
+			case "$exists":
+				matches = values.isEmpty() != (operand.isBoolean() ? operand.asBoolean().getValue() : !operand.isNumber() || operand.asNumber().intValue() != 0);
+				break;
+			default:
+				matches = false;
+				for (BsonValue value : flatten(values)) {
+					//NaN sorts before all numbers but is in range only of itself
+					if (isNaN(value) || isNaN(operand) ? isNaN(value) && isNaN(operand) && operator.endsWith("e") : typeRank(value) == typeRank(operand) && compares(operator, compare(value, operand))) {
+						matches = true;
+						break;
+					}
+				}
+			}
+			if (!matches)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean compares(String operator, int order) {
+		switch (operator) {
+		case "$gt":
+			return order > 0;
+		case "$gte":
+			return order >= 0;
+		case "$lt":
+			return order < 0;
+		default:
+			return order <= 0;
+		}
+	}
+
+	/**
+	 * Equality as the server applies it to a field: null also matches a missing field, and array fields match when one
+	 * of their elements is equal.
+	 */
+	private static boolean equalsAny(List<BsonValue> values, BsonValue expected) {
+		if (values.isEmpty())
+			return expected.isNull();
+		for (BsonValue value : flatten(values)) {
+			if (compare(value, expected) == 0)
+				return true;
+		}
+		return false;
+	}
+
+	private static List<BsonValue> flatten(List<BsonValue> values) {
+		List<BsonValue> flat = new ArrayList<BsonValue>();
+		for (BsonValue value : values) {
+			if (value.isArray())
+				flat.addAll(value.asArray());
+			flat.add(value);
+		}
+		return flat;
+	}
+
+	/**
+	 * The values at a dotted path, descending into the documents of arrays along the way as the server does.
+	 */
+	static List<BsonValue> values(BsonDocument document, String path) {
+		List<BsonValue> values = new ArrayList<BsonValue>();
+		collect(document, path.split("\\."), 0, values);
+		return values;
+	}
+
+	private static void collect(BsonValue value, String[] path, int depth, List<BsonValue> values) {
+		if (depth == path.length) {
+			values.add(value);
+		} else if (value.isDocument()) {
+			BsonValue child = value.asDocument().get(path[depth]);
+			if (child != null)
+				collect(child, path, depth + 1, values);
+		} else if (value.isArray()) {
+			if (path[depth].matches("\\d+") && Integer.parseInt(path[depth]) < value.asArray().size())
+				collect(value.asArray().get(Integer.parseInt(path[depth])), path, depth + 1, values);
+			for (BsonValue element : value.asArray()) {
+				if (element.isDocument())
+					collect(element, path, depth, values);
+			}
+		}
+	}
+
+	/**
+	 * The position of a value's type in the server's sort order; numbers of all types share one.
+	 */
+	private static int typeRank(BsonValue value) {
+		switch (value.getBsonType()) {
+		case MIN_KEY: return 1;
+		case NULL: case UNDEFINED: return 2;
+		case INT32: case INT64: case DOUBLE: case DECIMAL128: return 3;
+		case STRING: case SYMBOL: return 4;
+		case DOCUMENT: return 5;
+		case ARRAY: return 6;
+		case BINARY: return 7;
+		case OBJECT_ID: return 8;
+		case BOOLEAN: return 9;
+		case DATE_TIME: return 10;
+		case TIMESTAMP: return 11;
+		case REGULAR_EXPRESSION: return 12;
+		case MAX_KEY: return 14;
+		default: return 13;
+		}
+	}
+
+	/**
+	 * Orders values as the server sorts them: by type first, then by value. Values that isOrdered rejects are only
+	 * compared for equality.
+	 */
+	static int compare(BsonValue a, BsonValue b) {
+		int rank = Integer.compare(typeRank(a), typeRank(b));
+		if (rank != 0)
+			return rank;
+		switch (typeRank(a)) {
+		case 1:
+		case 2:
+		case 14:
+			return 0;
+		case 3:
+			return compareNumbers(a, b);
+		case 4:
+			return compareStrings(stringValue(a), stringValue(b));
+		case 5:
+			return compareDocuments(a.asDocument(), b.asDocument());
+		case 6:
+			Iterator<BsonValue> left = a.asArray().iterator();
+			Iterator<BsonValue> right = b.asArray().iterator();
+			while (left.hasNext() && right.hasNext()) {
+				int order = compare(left.next(), right.next());
+				if (order != 0)
+					return order;
+			}
+			return Boolean.compare(left.hasNext(), right.hasNext());
+		case 7:
+			return compareBinaries(a.asBinary().getData(), a.asBinary().getType(), b.asBinary().getData(), b.asBinary().getType());
+		case 8:
+			return a.asObjectId().getValue().compareTo(b.asObjectId().getValue());
+		case 9:
+			return Boolean.compare(a.asBoolean().getValue(), b.asBoolean().getValue());
+		case 10:
+			return Long.compare(a.asDateTime().getValue(), b.asDateTime().getValue());
+		case 11:
+			return Long.compareUnsigned(a.asTimestamp().getValue(), b.asTimestamp().getValue());
+		default:
+			//not ordered, see isOrdered
+			return a.equals(b) ? 0 : a.toString().compareTo(b.toString());
+		}
+	}
+
+	/**
+	 * Compares numbers by their exact values, whatever their types: NaN first and equal to itself, then negative
+	 * infinity, the finite values with -0.0 equal to 0, and positive infinity.
+	 */
+	private static int compareNumbers(BsonValue a, BsonValue b) {
+		if (!isFloatingPoint(a) && !isFloatingPoint(b))
+			return Long.compare(a.asNumber().longValue(), b.asNumber().longValue());
+		int order = Integer.compare(numberClass(a), numberClass(b));
+		if (order != 0 || numberClass(a) != 2)
+			return order;
+		if (a.isDouble() && b.isDouble()) {
+			double left = a.asDouble().getValue();
+			double right = b.asDouble().getValue();
+			return left < right ? -1 : left > right ? 1 : 0;
+		}
+		return toBigDecimal(a).compareTo(toBigDecimal(b));
+	}
+
+	private static boolean isNaN(BsonValue value) {
+		return isFloatingPoint(value) && numberClass(value) == 0;
+	}
+
+	private static boolean isFloatingPoint(BsonValue number) {
+		return number.isDouble() || number.isDecimal128();
+	}
+
+	/**
+	 * 0 for NaN, 1 for negative infinity, 2 for finite numbers and 3 for positive infinity.
+	 */
+	private static int numberClass(BsonValue number) {
+		if (number.isDouble()) {
+			double value = number.asDouble().getValue();
+			return Double.isNaN(value) ? 0 : value == Double.NEGATIVE_INFINITY ? 1 : value == Double.POSITIVE_INFINITY ? 3 : 2;
+		}
+		if (number.isDecimal128()) {
+			Decimal128 value = number.asDecimal128().getValue();
+			return value.isNaN() ? 0 : value.isInfinite() ? (value.isNegative() ? 1 : 3) : 2;
+		}
+		return 2;
+	}
+
+	/**
+	 * Compares strings as the server does without a collation: by their UTF-8 bytes, which order as their code points.
+	 */
+	static int compareStrings(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int left = a.codePointAt(i);
+			int right = b.codePointAt(j);
+			if (left != right)
+				return Integer.compare(left, right);
+			i += Character.charCount(left);
+			j += Character.charCount(right);
+		}
+		return Boolean.compare(i < a.length(), j < b.length());
+	}
+
+	/**
+	 * Compares binary values as the server does: by length, then subtype, then bytes, unsigned.
+	 */
+	private static int compareBinaries(byte[] a, byte aType, byte[] b, byte bType) {
+		int order = Integer.compare(a.length, b.length);
+		if (order == 0)
+			order = Integer.compare(aType & 0xff, bType & 0xff);
+		for (int i = 0; order == 0 && i < a.length; i++) {
+			order = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+		}
+		return order;
+	}
+
+	private static int compareDocuments(BsonDocument a, BsonDocument b) {
+		Iterator<String> left = a.keySet().iterator();
+		Iterator<String> right = b.keySet().iterator();
+		while (left.hasNext() && right.hasNext()) {
+			String leftKey = left.next();
+			String rightKey = right.next();
+			int order = Integer.compare(typeRank(a.get(leftKey)), typeRank(b.get(rightKey)));
+			if (order == 0)
+				order = compareStrings(leftKey, rightKey);
+			if (order == 0)
+				order = compare(a.get(leftKey), b.get(rightKey));
+			if (order != 0)
+				return order;
+		}
+		return Boolean.compare(left.hasNext(), right.hasNext());
+	}
+
+	private static BigDecimal toBigDecimal(BsonValue number) {
+		if (number.isDecimal128()) {
+			try {
+				return number.asDecimal128().getValue().bigDecimalValue();
+			} catch (ArithmeticException e) {
+				//negative zero, which BigDecimal cannot hold
+				return BigDecimal.ZERO;
+			}
+		}
+		if (number.isDouble())
+			return new BigDecimal(number.asDouble().getValue());
+		return BigDecimal.valueOf(number.asNumber().longValue());
+	}
+
+	private static String stringValue(BsonValue value) {
+		return value.isString() ? value.asString().getValue() : value.asSymbol().getSymbol();
+	}
+
+}
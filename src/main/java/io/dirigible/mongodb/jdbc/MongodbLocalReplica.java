@@ -0,0 +1,236 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+
+/**
+ * An in-memory copy of a small collection, loaded once and kept current by a change stream. While the copy is in sync,
+ * find specifications that MongodbLocalQuery supports are answered from it. While it loads, or resumes after an error,
+ * queries go to the server. Change streams need a replica set; a single node one will do.
+ */
+public class MongodbLocalReplica {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbLocalReplica.class);
+
+	private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+	private static final long MAX_BACKOFF = 60000;
+	//ChangeStreamHistoryLost and ChangeStreamFatalError: the resume token is of no use anymore
+	private static final int HISTORY_LOST = 286;
+	private static final int FATAL_ERROR = 280;
+
+	private final MongoCollection<RawBsonDocument> collection;
+	private final Thread synchronizer;
+	private volatile Map<BsonValue, RawBsonDocument> documents = Collections.emptyMap();
+	private volatile boolean isInSync;
+	private volatile boolean isStopped;
+	private volatile MongoChangeStreamCursor<?> changes;
+	private BsonDocument resumeToken;
+	private final AtomicLong loadCount = new AtomicLong();
+	private final AtomicLong changeCount = new AtomicLong();
+	private final AtomicLong queryCount = new AtomicLong();
+
+	MongodbLocalReplica(MongoCollection<?> collection) {
+		this.collection = collection.withDocumentClass(RawBsonDocument.class);
+		this.synchronizer = new Thread(this::synchronize, "mongodb-jdbc-replica-" + collection.getNamespace().getFullName());
+		this.synchronizer.setDaemon(true);
+		this.synchronizer.start();
+	}
+
+	private void synchronize() {
+		long backoff = 1000;
+		while (!this.isStopped) {
+			try {
+				this.follow();
+				backoff = 1000;
+			} catch (RuntimeException e) {
+				this.isInSync = false;
+				if (this.isStopped)
+					return;
+				if (e instanceof MongoCommandException && (((MongoCommandException) e).getErrorCode() == HISTORY_LOST || ((MongoCommandException) e).getErrorCode() == FATAL_ERROR))
+					this.resumeToken = null;
+				LOG.warn("Local replica of " + this.getNamespace() + " is out of sync, queries go to the server until it resumes", e);
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException ie) {
+					return;
+				}
+				backoff = Math.min(backoff * 2, MAX_BACKOFF);
+			}
+		}
+	}
+
+	/**
+	 * Opens the change stream, where the last one left off if possible, loads the collection if it could not resume,
+	 * and applies changes until the stream fails or the replica is stopped.
+	 */
+	private void follow() {
+		boolean isResuming = this.resumeToken != null;
+		ChangeStreamIterable<RawBsonDocument> stream = this.collection.watch().fullDocument(FullDocument.UPDATE_LOOKUP).maxAwaitTime(1, TimeUnit.SECONDS);
+		if (isResuming)
+			stream = stream.resumeAfter(this.resumeToken);
+		//the stream is opened before loading, so that no change made during the load is missed
+		try (MongoChangeStreamCursor<ChangeStreamDocument<RawBsonDocument>> cursor = stream.cursor()) {
+			this.changes = cursor;
+			if (!isResuming) {
+				Map<BsonValue, RawBsonDocument> loaded = new ConcurrentHashMap<BsonValue, RawBsonDocument>();
+				for (RawBsonDocument document : this.collection.find()) {
+					loaded.put(MongodbPointLookupLoader.matchKey(document.get("_id")), document);
+				}
+				this.documents = loaded;
+				this.loadCount.incrementAndGet();
+			}
+			while (!this.isStopped) {
+				ChangeStreamDocument<RawBsonDocument> change = cursor.tryNext();
+				if (change == null) {
+					//the changes made while loading, or since the stream was left, have been applied
+					this.isInSync = true;
+					this.resumeToken = cursor.getResumeToken();
+					continue;
+				}
+				this.resumeToken = change.getResumeToken();
+				this.changeCount.incrementAndGet();
+				if (!this.apply(change)) {
+					//dropped or renamed: start over from a fresh load
+					this.isInSync = false;
+					this.resumeToken = null;
+					return;
+				}
+			}
+		} finally {
+			this.changes = null;
+		}
+	}
+
+	/**
+	 * Applies a change to the copy. Returns false if the change invalidates the whole copy.
+	 */
+	private boolean apply(ChangeStreamDocument<RawBsonDocument> change) {
+		switch (change.getOperationType()) {
+		case INSERT:
+		case UPDATE:
+		case REPLACE:
+			BsonValue key = MongodbPointLookupLoader.matchKey(change.getDocumentKey().get("_id"));
+			if (change.getFullDocument() != null) {
+				this.documents.put(key, change.getFullDocument());
+			} else {
+				//deleted before the update was looked up
+				this.documents.remove(key);
+			}
+			return true;
+		case DELETE:
+			this.documents.remove(MongodbPointLookupLoader.matchKey(change.getDocumentKey().get("_id")));
+			return true;
+		case OTHER:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Answers a find specification from the copy, or returns null if the copy is not in sync or the specification is not
+	 * supported locally.
+	 */
+	List<Document> find(BsonDocument spec) {
+		if (!this.isInSync || !MongodbLocalQuery.isSupported(spec))
+			return null;
+		List<RawBsonDocument> found = MongodbLocalQuery.execute(spec, this.documents.values());
+		if (found == null)
+			return null;
+		this.queryCount.incrementAndGet();
+		return new AbstractList<Document>() {
+			@Override
+			public Document get(int index) {
+				return found.get(index).decode(DOCUMENT_CODEC);
+			}
+			@Override
+			public int size() {
+				return found.size();
+			}
+		};
+	}
+
+	void stop() {
+		this.isStopped = true;
+		this.synchronizer.interrupt();
+		MongoChangeStreamCursor<?> cursor = this.changes;
+		if (cursor != null) {
+			try {
+				cursor.close();
+			} catch (MongoException e) {
+				LOG.debug("Could not close change stream of " + this.getNamespace(), e);
+			}
+		}
+	}
+
+	public String getNamespace() {
+		return this.collection.getNamespace().getFullName();
+	}
+
+	/**
+	 * Whether queries are currently answered from the copy.
+	 */
+	public boolean isInSync() {
+		return this.isInSync;
+	}
+
+	public int getDocumentCount() {
+		return this.documents.size();
+	}
+
+	/**
+	 * The number of times the whole collection was loaded: once at start, and again whenever the change stream could
+	 * not be resumed.
+	 */
+	public long getLoadCount() {
+		return this.loadCount.get();
+	}
+
+	public long getChangeCount() {
+		return this.changeCount.get();
+	}
+
+	/**
+	 * The number of queries answered from the copy.
+	 */
+	public long getQueryCount() {
+		return this.queryCount.get();
+	}
+
+}
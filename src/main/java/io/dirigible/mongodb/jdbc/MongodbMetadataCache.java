@@ -0,0 +1,127 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Metadata read from the server, such as the server version, collection lists, inferred schemas, indexes and
+ * collection statistics, kept for a while by the shared client so that its connections do not read it again on every
+ * DatabaseMetaData call. Each entry belongs to a namespace, a database name for database wide entries, and is loaded
+ * once however many connections ask for it at the same time.
+ */
+public class MongodbMetadataCache {
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong loadCount = new AtomicLong();
+
+	private static class Entry {
+		final String namespace;
+		final CompletableFuture<Object> value = new CompletableFuture<Object>();
+		//until the value is loaded, the entry does not expire
+		volatile long expiresAt = Long.MAX_VALUE;
+		Entry(String namespace) {
+			this.namespace = namespace;
+		}
+	}
+
+	MongodbMetadataCache(){}
+
+	/**
+	 * The cached value of a kind of metadata about a namespace, or the value the loader returns if there is none or it
+	 * is older than ttl milliseconds. Callers that ask while the value loads wait for it instead of loading it again.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T get(String kind, String namespace, long ttl, Supplier<T> loader) {
+		String key = kind + ":" + namespace;
+		while (true) {
+			Entry entry = this.entries.get(key);
+			long now = System.currentTimeMillis();
+			if (entry != null && entry.expiresAt >= now) {
+				this.hitCount.incrementAndGet();
+				return (T) join(entry.value);
+			}
+			Entry loading = new Entry(namespace);
+			boolean isLoader = entry == null ? this.entries.putIfAbsent(key, loading) == null : this.entries.replace(key, entry, loading);
+			if (!isLoader)
+				continue;
+			//expired entries of namespaces no longer asked about would otherwise stay for good
+			this.entries.values().removeIf(expired -> expired.expiresAt < now);
+			this.loadCount.incrementAndGet();
+			Object event = MongodbFlightRecorder.beginMetadata();
+			try {
+				T value = loader.get();
+				if (event != null)
+					MongodbFlightRecorder.endMetadata(event, kind, namespace, value);
+				loading.expiresAt = System.currentTimeMillis() + ttl;
+				loading.value.complete(value);
+				return value;
+			} catch (Throwable e) {
+				//also on errors, or the callers waiting for the entry would wait for good
+				this.entries.remove(key, loading);
+				loading.value.completeExceptionally(e);
+				throw e;
+			}
+		}
+	}
+
+	private static Object join(CompletableFuture<Object> value) {
+		try {
+			return value.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Drops everything cached about a collection, given as database.collection, and the collection lists of its
+	 * database, so that the next metadata call reads them from the server again.
+	 */
+	public void refresh(String namespace) {
+		String dbName = namespace.indexOf('.') > 0 ? namespace.substring(0, namespace.indexOf('.')) : namespace;
+		this.entries.values().removeIf(entry -> entry.namespace.equals(namespace) || entry.namespace.equals(dbName));
+	}
+
+	/**
+	 * Drops everything cached.
+	 */
+	public void refresh() {
+		this.entries.clear();
+	}
+
+	/**
+	 * The number of calls answered from the cache, including those that waited for a value another call was loading.
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getLoadCount() {
+		return this.loadCount.get();
+	}
+
+	public int getEntryCount() {
+		return this.entries.size();
+	}
+
+}
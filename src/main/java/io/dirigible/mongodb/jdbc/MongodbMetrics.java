@@ -0,0 +1,108 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The query metrics of all connections in the JVM, by collection and query shape. To keep the number of metrics
+ * bounded, shapes beyond the first MAX_SHAPES are counted together under the shape OTHER.
+ */
+public class MongodbMetrics {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongodbMetrics.class);
+
+	public static final int MAX_SHAPES = 1000;
+	public static final String OTHER = "(other)";
+
+	private static final MongodbMetrics INSTANCE = new MongodbMetrics();
+
+	private final ConcurrentHashMap<String, MongodbQueryMetrics> metrics = new ConcurrentHashMap<String, MongodbQueryMetrics>();
+	private final List<MongodbMetricsExporter> exporters = new CopyOnWriteArrayList<MongodbMetricsExporter>();
+
+	private MongodbMetrics() {
+		try {
+			for (MongodbMetricsExporter exporter : ServiceLoader.load(MongodbMetricsExporter.class)) {
+				this.exporters.add(exporter);
+			}
+		} catch (ServiceConfigurationError e) {
+			LOG.warn("Could not load metrics exporters", e);
+		}
+	}
+
+	public static MongodbMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * The metrics of a query shape on a collection, created and announced to the exporters on first use.
+	 */
+	MongodbQueryMetrics forShape(String collection, String shape) {
+		String key = collection + " " + shape;
+		MongodbQueryMetrics found = this.metrics.get(key);
+		if (found != null)
+			return found;
+		if (this.metrics.size() >= MAX_SHAPES) {
+			shape = OTHER;
+			key = collection + " " + shape;
+			found = this.metrics.get(key);
+			if (found != null)
+				return found;
+		}
+		MongodbQueryMetrics created = new MongodbQueryMetrics(collection, shape);
+		found = this.metrics.putIfAbsent(key, created);
+		if (found != null)
+			return found;
+		for (MongodbMetricsExporter exporter : this.exporters) {
+			this.export(exporter, created);
+		}
+		return created;
+	}
+
+	private void export(MongodbMetricsExporter exporter, MongodbQueryMetrics metrics) {
+		try {
+			exporter.added(metrics);
+		} catch (RuntimeException e) {
+			LOG.warn("Metrics exporter " + exporter + " failed", e);
+		}
+	}
+
+	/**
+	 * Adds an exporter, unless it was added before, and announces the metrics recorded so far to it.
+	 */
+	public synchronized void addExporter(MongodbMetricsExporter exporter) {
+		if (this.exporters.contains(exporter))
+			return;
+		this.exporters.add(exporter);
+		for (MongodbQueryMetrics existing : this.metrics.values()) {
+			this.export(exporter, existing);
+		}
+	}
+
+	public Collection<MongodbQueryMetrics> getQueryMetrics() {
+		return Collections.unmodifiableCollection(this.metrics.values());
+	}
+
+}
@@ -0,0 +1,31 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+/**
+ * Publishes query metrics to a monitoring system. Exporters listed in
+ * META-INF/services/io.dirigible.mongodb.jdbc.MongodbMetricsExporter are added when the driver first records metrics;
+ * others can be added with MongodbMetrics.addExporter. Metrics are updated in place, so an exporter only needs to bind
+ * each of them once, e.g. as gauges that read its getters.
+ */
+public interface MongodbMetricsExporter {
+
+	/**
+	 * Called once for every query shape, when it is first executed or when the exporter is added.
+	 */
+	void added(MongodbQueryMetrics metrics);
+
+}
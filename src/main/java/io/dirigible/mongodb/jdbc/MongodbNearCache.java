@@ -0,0 +1,272 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+
+import com.mongodb.client.MongoCollection;
+
+/**
+ * Client side cache of documents read by <code>_id</code> or by another single field with a unique index, for the
+ * collections it is configured for. Each collection has its own time to live and byte budget, evicting the least
+ * recently used documents first. Any write to a collection through a connection sharing the cache drops its documents.
+ */
+public class MongodbNearCache {
+
+	static final long DEFAULT_TTL = 60000;
+	static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+	private final Map<String, long[]> settings = new HashMap<String, long[]>();
+	private final ConcurrentHashMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+
+	private static class Entry {
+		//kept encoded, so that every hit decodes a Document of its own that callers are free to change
+		final RawBsonDocument document;
+		final long bytes;
+		final long expiresAt;
+		Entry(RawBsonDocument document, long bytes, long expiresAt) {
+			this.document = document;
+			this.bytes = bytes;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * The single field unique keys of a collection, and the index list they were read from.
+	 */
+	private static class UniqueKeys {
+		final List<BsonDocument> indexes;
+		final Set<String> fields = new HashSet<String>();
+		UniqueKeys(List<BsonDocument> indexes) {
+			this.indexes = indexes;
+			for (BsonDocument index : indexes) {
+				BsonDocument key = index.getDocument("key", new BsonDocument());
+				if (isTrue(index.get("unique")) && key.size() == 1 && !index.containsKey("partialFilterExpression"))
+					this.fields.add(key.getFirstKey());
+			}
+		}
+	}
+
+	/**
+	 * The cached documents and counters of one collection.
+	 */
+	private static class Region {
+		final long ttl;
+		final long maxBytes;
+		final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		long bytes;
+		long generation;
+		volatile UniqueKeys uniqueKeys;
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final AtomicLong evictions = new AtomicLong();
+		final AtomicLong invalidations = new AtomicLong();
+		Region(long ttl, long maxBytes) {
+			this.ttl = ttl;
+			this.maxBytes = maxBytes;
+		}
+	}
+
+	/**
+	 * Parses the nearCache connection property: comma separated collection names, each optionally followed by its time
+	 * to live in milliseconds and its maximum size in bytes, e.g. <code>countries:300000:1048576,currencies</code>.
+	 */
+	MongodbNearCache(String config) {
+		for (String collection : config.split(",")) {
+			String[] parts = collection.trim().split(":");
+			if (parts[0].isEmpty())
+				continue;
+			long ttl = parts.length > 1 ? Long.parseLong(parts[1]) : DEFAULT_TTL;
+			long maxBytes = parts.length > 2 ? Long.parseLong(parts[2]) : DEFAULT_MAX_BYTES;
+			this.settings.put(parts[0], new long[] { ttl, maxBytes });
+		}
+	}
+
+	private Region region(MongoCollection<?> collection) {
+		String namespace = collection.getNamespace().getFullName();
+		Region region = this.regions.get(namespace);
+		if (region == null) {
+			long[] setting = this.settings.get(collection.getNamespace().getCollectionName());
+			if (setting == null)
+				return null;
+			region = this.regions.computeIfAbsent(namespace, k -> new Region(setting[0], setting[1]));
+		}
+		return region;
+	}
+
+	/**
+	 * Whether lookups of field in collection are cached: the collection is configured, and field is <code>_id</code> or
+	 * has a unique index of its own among indexes, which come from the metadata cache, so that creating or dropping an
+	 * index is noticed. The unique keys are read again whenever indexes gives another list.
+	 */
+	boolean isCachedKey(MongoCollection<?> collection, String field, Supplier<List<BsonDocument>> indexes) {
+		Region region = this.region(collection);
+		if (region == null)
+			return false;
+		if ("_id".equals(field))
+			return true;
+		List<BsonDocument> current = indexes.get();
+		UniqueKeys uniqueKeys = region.uniqueKeys;
+		if (uniqueKeys == null || uniqueKeys.indexes != current) {
+			uniqueKeys = new UniqueKeys(current);
+			region.uniqueKeys = uniqueKeys;
+		}
+		return uniqueKeys.fields.contains(field);
+	}
+
+	/**
+	 * Whether an index option is set. Servers keep options as given, so unique may be 1 as well as true.
+	 */
+	private static boolean isTrue(BsonValue option) {
+		return option != null && (option.isBoolean() ? option.asBoolean().getValue() : option.isNumber() && option.asNumber().doubleValue() != 0);
+	}
+
+	private static String key(String field, BsonValue value) {
+		return field + new BsonDocument("", MongodbPointLookupLoader.matchKey(value)).toJson();
+	}
+
+	/**
+	 * The cached document with value in field, or null if it is not cached or has expired.
+	 */
+	Document get(MongoCollection<?> collection, String field, BsonValue value) {
+		Region region = this.region(collection);
+		Entry entry;
+		synchronized (region) {
+			entry = region.entries.get(key(field, value));
+			if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+				region.entries.remove(key(field, value));
+				region.bytes -= entry.bytes;
+				entry = null;
+			}
+		}
+		(entry != null ? region.hits : region.misses).incrementAndGet();
+		return entry != null ? entry.document.decode(DOCUMENT_CODEC) : null;
+	}
+
+	/**
+	 * The write count of a collection, taken before reading a document to cache so that a write in between is noticed.
+	 */
+	long generation(MongoCollection<?> collection) {
+		Region region = this.region(collection);
+		synchronized (region) {
+			return region.generation;
+		}
+	}
+
+	/**
+	 * Caches a document read with value in field, unless the collection was written to since generation was taken.
+	 */
+	void put(MongoCollection<?> collection, String field, BsonValue value, Document document, long generation) {
+		Region region = this.region(collection);
+		RawBsonDocument encoded = new RawBsonDocument(document, DOCUMENT_CODEC);
+		long bytes = encoded.getByteBuffer().remaining();
+		if (bytes > region.maxBytes)
+			return;
+		synchronized (region) {
+			if (region.generation != generation)
+				return;
+			Entry previous = region.entries.put(key(field, value), new Entry(encoded, bytes, System.currentTimeMillis() + region.ttl));
+			region.bytes += bytes - (previous != null ? previous.bytes : 0);
+			Iterator<Entry> eldest = region.entries.values().iterator();
+			while (region.bytes > region.maxBytes && eldest.hasNext()) {
+				region.bytes -= eldest.next().bytes;
+				eldest.remove();
+				region.evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached documents of a collection that was written to.
+	 */
+	void invalidate(String namespace) {
+		Region region = this.regions.get(namespace);
+		if (region == null)
+			return;
+		synchronized (region) {
+			region.generation++;
+			region.entries.clear();
+			region.bytes = 0;
+		}
+		region.invalidations.incrementAndGet();
+	}
+
+	public long getHitCount(String namespace) {
+		Region region = this.regions.get(namespace);
+		return region != null ? region.hits.get() : 0;
+	}
+
+	public long getMissCount(String namespace) {
+		Region region = this.regions.get(namespace);
+		return region != null ? region.misses.get() : 0;
+	}
+
+	/**
+	 * The share of lookups in a collection, given as <code>database.collection</code>, that were answered from the cache.
+	 */
+	public double getHitRate(String namespace) {
+		long hits = this.getHitCount(namespace);
+		long lookups = hits + this.getMissCount(namespace);
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public long getEvictionCount(String namespace) {
+		Region region = this.regions.get(namespace);
+		return region != null ? region.evictions.get() : 0;
+	}
+
+	public long getInvalidationCount(String namespace) {
+		Region region = this.regions.get(namespace);
+		return region != null ? region.invalidations.get() : 0;
+	}
+
+	/**
+	 * The estimated size in bytes of the cached documents of a collection.
+	 */
+	public long getSize(String namespace) {
+		Region region = this.regions.get(namespace);
+		if (region == null)
+			return 0;
+		synchronized (region) {
+			return region.bytes;
+		}
+	}
+
+	/**
+	 * The collections, as <code>database.collection</code>, that have been cached from so far.
+	 */
+	public Set<String> getNamespaces() {
+		return this.regions.keySet();
+	}
+
+}
@@ -0,0 +1,246 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Decimal128;
+
+import com.mongodb.client.MongoCollection;
+
+/**
+ * Batches concurrent lookups of single documents by <code>_id</code>: lookups in the same collection, with the same read
+ * preference and read concern, issued by any connection of a shared client within a short window are sent as one
+ * <code>{_id: {$in: [...]}}</code> query, and each caller gets the document with its own id.
+ */
+class MongodbPointLookupLoader {
+
+	private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+	private final long windowMillis;
+	private final int maxBatchSize;
+	private final ConcurrentHashMap<String, Batch> pending = new ConcurrentHashMap<String, Batch>();
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService loader;
+
+	private static class Batch {
+		final MongoCollection<BsonDocument> collection;
+		final Map<BsonValue, BsonValue> ids = new HashMap<BsonValue, BsonValue>();
+		final Map<BsonValue, List<CompletableFuture<Document>>> waiting = new HashMap<BsonValue, List<CompletableFuture<Document>>>();
+		boolean isClosed;
+		Batch(MongoCollection<BsonDocument> collection) {
+			this.collection = collection;
+		}
+	}
+
+	MongodbPointLookupLoader(long windowMillis, int maxBatchSize) {
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "mongodb-jdbc-lookup-batcher");
+			t.setDaemon(true);
+			return t;
+		});
+		this.loader = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "mongodb-jdbc-lookup-loader");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Whether a value can be looked up with <code>$in</code> and still mean what it means as <code>{_id: value}</code>,
+	 * i.e. it is not null, an array, a regular expression or an operator document.
+	 */
+	static boolean isPointLookupId(BsonValue id) {
+		if (id.isNull() || id.isArray() || id.isRegularExpression())
+			return false;
+		return !id.isDocument() || id.asDocument().isEmpty() || !id.asDocument().getFirstKey().startsWith("$");
+	}
+
+	/**
+	 * Finds the document with id in collection as part of the next batch, and waits for it. Returns null if there is none.
+	 */
+	Document load(MongoCollection<BsonDocument> collection, BsonValue id) throws SQLException {
+		String key = collection.getNamespace().getFullName() + collection.getReadPreference() + collection.getReadConcern().asDocument().toJson();
+		CompletableFuture<Document> result = new CompletableFuture<Document>();
+		BsonValue matchKey = matchKey(id);
+		Batch full = null;
+		while (true) {
+			Batch batch = this.pending.computeIfAbsent(key, k -> {
+				Batch created = new Batch(collection);
+				this.scheduler.schedule(() -> this.loader.execute(() -> this.loadIfOpen(key, created)), this.windowMillis, TimeUnit.MILLISECONDS);
+				return created;
+			});
+			synchronized (batch) {
+				if (batch.isClosed) {
+					this.pending.remove(key, batch);
+					continue;
+				}
+				batch.ids.put(matchKey, id);
+				batch.waiting.computeIfAbsent(matchKey, k -> new ArrayList<CompletableFuture<Document>>()).add(result);
+				if (batch.ids.size() >= this.maxBatchSize) {
+					batch.isClosed = true;
+					this.pending.remove(key, batch);
+					full = batch;
+				}
+			}
+			break;
+		}
+		if (full != null) {
+			this.load(full);
+		}
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a batched lookup", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new SQLException(e.getCause());
+		}
+	}
+
+	/**
+	 * The server compares numbers by value, also inside embedded documents and arrays, so 1, 1L, 1.0 and
+	 * NumberDecimal("1") are the same id, while BsonInt32, BsonInt64, BsonDouble and BsonDecimal128 are never equal.
+	 * Integral values that fit in a long become a BsonInt64, other numbers a <code>{$number: "..."}</code> document
+	 * with their exact value, documents a <code>{$fields: [...]}</code> document with their keyed fields in order, and
+	 * arrays an array of their keyed values. No point lookup id starts with a $ field.
+	 */
+	static BsonValue matchKey(BsonValue id) {
+		switch (id.getBsonType()) {
+		case INT32:
+			return new BsonInt64(id.asInt32().getValue());
+		case DOUBLE:
+			double value = id.asDouble().getValue();
+			//-2^63 and 2^63 are exact doubles, the range of a long is [-2^63, 2^63)
+			if (value == Math.rint(value) && value >= -0x1p63 && value < 0x1p63)
+				return new BsonInt64((long) value);
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				return numberKey(Double.toString(value));
+			return numberKey(new BigDecimal(value));
+		case DECIMAL128:
+			Decimal128 decimal = id.asDecimal128().getValue();
+			if (decimal.isNaN())
+				return numberKey(Double.toString(Double.NaN));
+			if (decimal.isInfinite())
+				return numberKey(Double.toString(decimal.isNegative() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY));
+			return numberKey(decimal.bigDecimalValue());
+		case DOCUMENT:
+			//the server compares fields in order, BsonDocument.equals does not
+			List<BsonValue> fields = new ArrayList<BsonValue>();
+			for (Map.Entry<String, BsonValue> entry : id.asDocument().entrySet()) {
+				fields.add(new BsonDocument(entry.getKey(), matchKey(entry.getValue())));
+			}
+			return new BsonDocument("$fields", new BsonArray(fields));
+		case ARRAY:
+			List<BsonValue> values = new ArrayList<BsonValue>();
+			for (BsonValue element : id.asArray()) {
+				values.add(matchKey(element));
+			}
+			return new BsonArray(values);
+		default:
+			return id;
+		}
+	}
+
+	private static BsonValue numberKey(BigDecimal value) {
+		BigDecimal stripped = value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+		if (stripped.scale() <= 0 && stripped.toBigInteger().bitLength() < 64)
+			return new BsonInt64(stripped.longValueExact());
+		return numberKey(stripped.toString());
+	}
+
+	private static BsonValue numberKey(String value) {
+		return new BsonDocument("$number", new BsonString(value));
+	}
+
+	private void loadIfOpen(String key, Batch batch) {
+		synchronized (batch) {
+			if (batch.isClosed) {
+				return;
+			}
+			batch.isClosed = true;
+		}
+		this.pending.remove(key, batch);
+		this.load(batch);
+	}
+
+	private void load(Batch batch) {
+		try {
+			BsonDocument filter = new BsonDocument("_id", new BsonDocument("$in", new BsonArray(new ArrayList<BsonValue>(batch.ids.values()))));
+			for (BsonDocument found : batch.collection.find(filter).batchSize(batch.ids.size())) {
+				List<CompletableFuture<Document>> waiting = batch.waiting.remove(matchKey(found.get("_id")));
+				if (waiting != null) {
+					Document document = DOCUMENT_CODEC.decode(new BsonDocumentReader(found), DecoderContext.builder().build());
+					for (CompletableFuture<Document> result : waiting) {
+						result.complete(document);
+					}
+				}
+			}
+			for (List<CompletableFuture<Document>> notFound : batch.waiting.values()) {
+				for (CompletableFuture<Document> result : notFound) {
+					result.complete(null);
+				}
+			}
+		} catch (RuntimeException e) {
+			for (List<CompletableFuture<Document>> waiting : batch.waiting.values()) {
+				for (CompletableFuture<Document> result : waiting) {
+					result.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads what is pending and stops the background threads.
+	 */
+	void shutdown() {
+		for (String key : this.pending.keySet()) {
+			Batch batch = this.pending.get(key);
+			if (batch != null) {
+				this.loadIfOpen(key, batch);
+			}
+		}
+		this.scheduler.shutdownNow();
+		this.loader.shutdown();
+	}
+
+}
@@ -38,15 +38,28 @@ import java.util.Calendar;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.bson.BsonDocument;
+
 public class MongodbPreparedStatement extends MongodbStatement implements PreparedStatement {
 
 	String pStmntString;
 	SortedMap<Integer, Object> parameters = new TreeMap<Integer, Object>();
 	private ResultSet rs;
+	private BsonDocument spec;
 	
 	public MongodbPreparedStatement(MongodbConnection conn, String sql) {
 		super(conn);
 		this.pStmntString = sql;
+		this.isPoolable = true;
+	}
+
+	/**
+	 * The statement document, parsed once and reused by every execution. Null for statements that are not plain documents.
+	 */
+	private BsonDocument getSpec() {
+		if(this.spec==null && this.pStmntString!=null && this.pStmntString.trim().startsWith("{"))
+			this.spec = BsonDocument.parse(this.pStmntString);
+		return this.spec;
 	}
 
 	@Override
@@ -56,13 +69,44 @@ public class MongodbPreparedStatement extends MongodbStatement implements Prepar
 	
 	@Override
 	public ResultSet executeQuery() throws SQLException {
-		this.rs = super.executeQuery(this.pStmntString);
+		BsonDocument query = this.getSpec();
+		this.rs = query != null ? super.executeQuery(query) : super.executeQuery(this.pStmntString);
 		return rs;
 	}
 
 	@Override
 	public int executeUpdate() throws SQLException {
-		return super.executeUpdate(this.pStmntString);
+		BsonDocument updateDocument = this.getSpec();
+		this.generatedKeys.clear();
+		return updateDocument != null ? super.executeUpdate(updateDocument) : super.executeUpdate(this.pStmntString);
+	}
+
+	/**
+	 * Poolable statements go back to the statement cache of the connection, if it has one, with their parameters and
+	 * settings cleared.
+	 */
+	@Override
+	public void close() throws SQLException {
+		if(this.isClosed)
+			return;
+		if(this.isPoolable && this.conn.getStatementCacheSize() > 0){
+			this.isClosed = true;
+			this.closeResultSets();
+			this.rs = null;
+			this.clearParameters();
+			this.clearBatch();
+			this.reset();
+			this.conn.cacheStatement(this);
+			return;
+		}
+		super.close();
+	}
+
+	/**
+	 * Closes a cached statement for good, when the statement cache of the connection drops it.
+	 */
+	void discard() throws SQLException {
+		super.close();
 	}
 
 	@Override
@@ -78,8 +122,7 @@ public class MongodbPreparedStatement extends MongodbStatement implements Prepar
 	
 	@Override
 	public void clearParameters() throws SQLException {
-		// TODO Auto-generated method stub
-
+		this.parameters.clear();
 	}
 
 	@Override
@@ -0,0 +1,194 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What is recorded about the statements of one query shape on one collection: how long they take to execute, to
+ * return their first row and to be fetched completely, how much of that the server round trips take, and how many documents, reply bytes and getMore round trips
+ * they cost. Histograms hold nanoseconds.
+ */
+public class MongodbQueryMetrics implements MongodbQueryMetricsMXBean {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String collection;
+	private final String shape;
+	private final MongodbHistogram executeLatency = new MongodbHistogram();
+	private final MongodbHistogram timeToFirstRow = new MongodbHistogram();
+	private final MongodbHistogram fetchTime = new MongodbHistogram();
+	private final MongodbHistogram serverTime = new MongodbHistogram();
+	private final MongodbHistogram clientTime = new MongodbHistogram();
+	private final LongAdder documents = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder getMores = new LongAdder();
+
+	MongodbQueryMetrics(String collection, String shape) {
+		this.collection = collection;
+		this.shape = shape;
+	}
+
+	void executed(long nanos) {
+		this.executeLatency.record(nanos);
+	}
+
+	void firstRow(long nanos) {
+		this.timeToFirstRow.record(nanos);
+	}
+
+	void fetched(long nanos, long documents) {
+		this.fetchTime.record(nanos);
+		this.documents.add(documents);
+	}
+
+	void commands(long serverNanos, long clientNanos, long bytes, int getMores) {
+		this.serverTime.record(serverNanos);
+		this.clientTime.record(clientNanos);
+		this.bytes.add(bytes);
+		this.getMores.add(getMores);
+	}
+
+	@Override
+	public String getCollection() {
+		return this.collection;
+	}
+
+	/**
+	 * The specification with its literal values replaced by ?, see MongodbQueryShape.
+	 */
+	@Override
+	public String getShape() {
+		return this.shape;
+	}
+
+	public MongodbHistogram getExecuteLatency() {
+		return this.executeLatency;
+	}
+
+	/**
+	 * From the start of the execution until the first next() of the result set returned.
+	 */
+	public MongodbHistogram getTimeToFirstRow() {
+		return this.timeToFirstRow;
+	}
+
+	/**
+	 * The time spent in next() calls of a result set, recorded when it is closed.
+	 */
+	public MongodbHistogram getFetchTime() {
+		return this.fetchTime;
+	}
+
+	/**
+	 * The round trip time of the server commands of an execution, see MongodbCommandStats.
+	 */
+	public MongodbHistogram getServerTime() {
+		return this.serverTime;
+	}
+
+	/**
+	 * The time an execution spent in the driver besides server round trips, mostly decoding documents.
+	 */
+	public MongodbHistogram getClientTime() {
+		return this.clientTime;
+	}
+
+	@Override
+	public long getExecutionCount() {
+		return this.executeLatency.getCount();
+	}
+
+	@Override
+	public double getExecuteLatencyMean() {
+		return this.executeLatency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getExecuteLatencyP50() {
+		return this.executeLatency.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getExecuteLatencyP99() {
+		return this.executeLatency.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getExecuteLatencyMax() {
+		return this.executeLatency.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getTimeToFirstRowP50() {
+		return this.timeToFirstRow.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getTimeToFirstRowP99() {
+		return this.timeToFirstRow.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFetchTimeP50() {
+		return this.fetchTime.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFetchTimeP99() {
+		return this.fetchTime.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getServerTimeP50() {
+		return this.serverTime.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getServerTimeP99() {
+		return this.serverTime.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getClientTimeP50() {
+		return this.clientTime.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getClientTimeP99() {
+		return this.clientTime.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getDocumentCount() {
+		return this.documents.sum();
+	}
+
+	/**
+	 * The size of the server replies to the commands of the statements.
+	 */
+	@Override
+	public long getByteCount() {
+		return this.bytes.sum();
+	}
+
+	@Override
+	public long getGetMoreCount() {
+		return this.getMores.sum();
+	}
+
+}
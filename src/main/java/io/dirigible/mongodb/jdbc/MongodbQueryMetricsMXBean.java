@@ -0,0 +1,59 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+/**
+ * The metrics of a query shape as the JMX exporter shows them. Times are in milliseconds.
+ */
+public interface MongodbQueryMetricsMXBean {
+
+	String getCollection();
+
+	String getShape();
+
+	long getExecutionCount();
+
+	double getExecuteLatencyMean();
+
+	double getExecuteLatencyP50();
+
+	double getExecuteLatencyP99();
+
+	double getExecuteLatencyMax();
+
+	double getTimeToFirstRowP50();
+
+	double getTimeToFirstRowP99();
+
+	double getFetchTimeP50();
+
+	double getFetchTimeP99();
+
+	double getServerTimeP50();
+
+	double getServerTimeP99();
+
+	double getClientTimeP50();
+
+	double getClientTimeP99();
+
+	long getDocumentCount();
+
+	long getByteCount();
+
+	long getGetMoreCount();
+
+}
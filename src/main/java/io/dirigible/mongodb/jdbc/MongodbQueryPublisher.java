@@ -0,0 +1,162 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+/**
+ * A cold publisher of the documents of a query. Every subscriber gets its own cursor, which is opened on the first request
+ * with a batch size matching that demand. Documents are read from the cursor only while there is outstanding demand, so the
+ * driver never fetches more than one batch ahead of the subscriber.
+ */
+public class MongodbQueryPublisher implements Publisher<Document> {
+
+	static final int MAX_DEMAND_BATCH_SIZE = 10000;
+
+	private final Supplier<MongoIterable<Document>> query;
+	private final Integer batchSize;
+	private final Executor executor;
+
+	MongodbQueryPublisher(Supplier<MongoIterable<Document>> query, Integer batchSize, Executor executor) {
+		this.query = query;
+		this.batchSize = batchSize;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Document> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber");
+		}
+		QuerySubscription subscription = new QuerySubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	private class QuerySubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super Document> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile boolean isCancelled;
+		private volatile Throwable invalidRequest;
+		private MongoCursor<Document> cursor;
+
+		QuerySubscription(Subscriber<? super Document> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				this.invalidRequest = new IllegalArgumentException("Requested a non-positive number of documents: " + n);
+			} else {
+				long current;
+				do {
+					current = this.demand.get();
+				} while (!this.demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+			}
+			this.schedule();
+		}
+
+		@Override
+		public void cancel() {
+			this.isCancelled = true;
+			this.schedule();
+		}
+
+		private void schedule() {
+			if (this.wip.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				this.drain();
+				missed = this.wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			try {
+				if (this.isCancelled) {
+					this.closeCursor();
+					return;
+				}
+				if (this.invalidRequest != null) {
+					this.terminate(this.invalidRequest);
+					return;
+				}
+				long requested = this.demand.get();
+				if (requested == 0) {
+					return;
+				}
+				if (this.cursor == null) {
+					MongoIterable<Document> searchHits = query.get();
+					searchHits.batchSize(batchSize != null ? batchSize : (int) Math.min(requested, MAX_DEMAND_BATCH_SIZE));
+					this.cursor = searchHits.iterator();
+				}
+				long emitted = 0;
+				while (emitted < requested && !this.isCancelled && this.invalidRequest == null) {
+					if (!this.cursor.hasNext()) {
+						this.terminate(null);
+						return;
+					}
+					this.subscriber.onNext(this.cursor.next());
+					emitted++;
+				}
+				this.demand.addAndGet(-emitted);
+				if (this.isCancelled) {
+					this.closeCursor();
+				}
+			} catch (RuntimeException e) {
+				this.terminate(e);
+			}
+		}
+
+		private void terminate(Throwable error) {
+			this.isCancelled = true;
+			this.closeCursor();
+			if (error == null) {
+				this.subscriber.onComplete();
+			} else {
+				this.subscriber.onError(error);
+			}
+		}
+
+		private void closeCursor() {
+			if (this.cursor != null) {
+				this.cursor.close();
+				this.cursor = null;
+			}
+		}
+
+	}
+
+}
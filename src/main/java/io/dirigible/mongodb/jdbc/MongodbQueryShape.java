@@ -0,0 +1,91 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.Map;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * The shape of a specification: the specification with every literal value replaced by ?, so that queries that only
+ * differ in their values are measured together. Field names, operators and stage names are kept, as are sort and
+ * projection specifications, which are part of the shape. An array of literals becomes a single ?, so that $in lists of
+ * different lengths share a shape.
+ */
+class MongodbQueryShape {
+
+	private static final BsonString LITERAL = new BsonString("?");
+
+	private MongodbQueryShape(){}
+
+	static String of(BsonDocument spec) {
+		BsonDocument shape = new BsonDocument();
+		for (Map.Entry<String, BsonValue> field : spec.entrySet()) {
+			switch (field.getKey()) {
+			case "find":
+			case "sort":
+			case "projection":
+				shape.put(field.getKey(), field.getValue());
+				break;
+			case "db":
+			case "batchSize":
+			case "cacheTtl":
+				//do not change what the query does
+				break;
+			default:
+				shape.put(field.getKey(), mask(field.getValue()));
+			}
+		}
+		return shape.toJson();
+	}
+
+	/**
+	 * The shape of an update command: its name and target collection, and the names of its other fields, whose values
+	 * are left out altogether, since they hold the documents and statements of the command.
+	 */
+	static String ofCommand(BsonDocument command) {
+		BsonDocument shape = new BsonDocument();
+		for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+			shape.put(field.getKey(), shape.isEmpty() ? field.getValue() : LITERAL);
+		}
+		return shape.toJson();
+	}
+
+	private static BsonValue mask(BsonValue value) {
+		if (value.isDocument()) {
+			BsonDocument masked = new BsonDocument();
+			for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+				masked.put(field.getKey(), mask(field.getValue()));
+			}
+			return masked;
+		}
+		if (value.isArray()) {
+			BsonArray masked = new BsonArray();
+			for (BsonValue element : value.asArray()) {
+				BsonValue maskedElement = mask(element);
+				//documents, e.g. pipeline stages or $or clauses, keep their own shape
+				if (!maskedElement.equals(LITERAL) || !masked.contains(LITERAL))
+					masked.add(maskedElement);
+			}
+			return masked;
+		}
+		return LITERAL;
+	}
+
+}
@@ -0,0 +1,375 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+
+import com.mongodb.ReadPreference;
+
+/**
+ * Client side cache of the results of find and aggreg queries, kept as raw BSON and keyed by the canonical form of
+ * their specification. Entries live for the TTL of the connection or the <code>cacheTtl</code> of the specification,
+ * the least recently used go first when the byte budget is exceeded, and writes through a connection sharing the
+ * cache drop the entries that read from the written collection.
+ */
+public class MongodbResultCache {
+
+	static final long DEFAULT_TTL = 10000;
+
+	private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+	//2^53, the largest magnitude up to which every integral double has an exact long counterpart
+	private static final double MAX_EXACT_DOUBLE = 9007199254740992d;
+	//what a too large marker is counted as besides its key, so that markers take their share of the budget
+	private static final long MARKER_BYTES = 64;
+
+	private final long maxBytes;
+	private final long maxEntryBytes;
+	private final long defaultTtl;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long bytes;
+	private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private static class Entry {
+		//null for results found too large to cache, remembered so that they are not fetched twice
+		final List<RawBsonDocument> rows;
+		final long bytes;
+		final long expiresAt;
+		final Set<String> namespaces;
+		Entry(List<RawBsonDocument> rows, long bytes, long expiresAt, Set<String> namespaces) {
+			this.rows = rows;
+			this.bytes = bytes;
+			this.expiresAt = expiresAt;
+			this.namespaces = namespaces;
+		}
+	}
+
+	/**
+	 * The generations of the collections a query reads, taken before it runs so that writes in between are noticed.
+	 */
+	static class Snapshot {
+		final String key;
+		final Set<String> namespaces;
+		final long[] generations;
+		final long ttl;
+		Snapshot(String key, Set<String> namespaces, long[] generations, long ttl) {
+			this.key = key;
+			this.namespaces = namespaces;
+			this.generations = generations;
+			this.ttl = ttl;
+		}
+	}
+
+	MongodbResultCache(long maxBytes, long defaultTtl) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxBytes / 4;
+		this.defaultTtl = defaultTtl;
+	}
+
+	long getDefaultTtl() {
+		return this.defaultTtl;
+	}
+
+	long getMaxEntryBytes() {
+		return this.maxEntryBytes;
+	}
+
+	/**
+	 * The cache key of a find or aggreg specification in a database, read with a read preference: top level keys and
+	 * query operators sorted, and integral numbers in query values given one type. Literal documents, sorts and
+	 * pipeline stages other than <code>$match</code> keep their order, since it is significant to the server. The read
+	 * preference, with its tags and max staleness, is part of the key, so that results read from a lagging secondary
+	 * are not served to readers of the primary.
+	 */
+	static String key(String dbName, ReadPreference readPreference, BsonDocument spec) {
+		BsonDocument canonical = new BsonDocument();
+		for (String key : new TreeSet<String>(spec.keySet())) {
+			if ("cacheTtl".equals(key) || "batchSize".equals(key))
+				continue;
+			BsonValue value = spec.get(key);
+			if ("filter".equals(key) && value.isDocument()) {
+				value = canonicalQuery(value.asDocument());
+			} else if ("aggreg".equals(key) && value.isArray()) {
+				BsonArray pipeline = new BsonArray();
+				for (BsonValue stage : value.asArray()) {
+					boolean isMatch = stage.isDocument() && stage.asDocument().size() == 1 && stage.asDocument().isDocument("$match");
+					pipeline.add(isMatch ? new BsonDocument("$match", canonicalQuery(stage.asDocument().getDocument("$match"))) : stage);
+				}
+				value = pipeline;
+			}
+			canonical.put(key, value);
+		}
+		return dbName + readPreference.toDocument().toJson() + canonical.toJson();
+	}
+
+	private static BsonDocument canonicalQuery(BsonDocument query) {
+		BsonDocument canonical = new BsonDocument();
+		for (String key : new TreeSet<String>(query.keySet())) {
+			BsonValue value = query.get(key);
+			if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && value.isArray()) {
+				BsonArray clauses = new BsonArray();
+				for (BsonValue clause : value.asArray()) {
+					clauses.add(clause.isDocument() ? canonicalQuery(clause.asDocument()) : clause);
+				}
+				canonical.put(key, clauses);
+			} else if (key.startsWith("$")) {
+				canonical.put(key, value);
+			} else {
+				canonical.put(key, canonicalCondition(value));
+			}
+		}
+		return canonical;
+	}
+
+	private static BsonValue canonicalCondition(BsonValue value) {
+		if (value.isDocument() && !value.asDocument().isEmpty() && value.asDocument().getFirstKey().startsWith("$")) {
+			BsonDocument operators = new BsonDocument();
+			for (String operator : new TreeSet<String>(value.asDocument().keySet())) {
+				BsonValue operand = value.asDocument().get(operator);
+				if ("$elemMatch".equals(operator) && operand.isDocument()) {
+					operand = operand.asDocument().isEmpty() || !operand.asDocument().getFirstKey().startsWith("$") ? canonicalQuery(operand.asDocument()) : canonicalCondition(operand);
+				} else if ("$not".equals(operator)) {
+					operand = canonicalCondition(operand);
+				} else if (operand.isArray()) {
+					BsonArray values = new BsonArray();
+					for (BsonValue element : operand.asArray()) {
+						values.add(canonicalNumber(element));
+					}
+					operand = values;
+				} else {
+					operand = canonicalNumber(operand);
+				}
+				operators.put(operator, operand);
+			}
+			return operators;
+		}
+		return canonicalNumber(value);
+	}
+
+	/**
+	 * The server compares numbers by value, so integral int32, int64 and double values are keyed as int64.
+	 */
+	private static BsonValue canonicalNumber(BsonValue value) {
+		if (value.isInt32())
+			return new BsonInt64(value.asInt32().getValue());
+		if (value.isDouble()) {
+			double d = value.asDouble().getValue();
+			if (d == Math.rint(d) && Math.abs(d) <= MAX_EXACT_DOUBLE)
+				return new BsonInt64((long) d);
+		}
+		return value;
+	}
+
+	/**
+	 * The collections, as <code>database.collection</code>, that a find or aggreg specification reads from, or null if
+	 * the specification also writes, with <code>$out</code> or <code>$merge</code>, and must not be cached.
+	 */
+	static Set<String> namespaces(String dbName, String collectionName, BsonDocument spec) {
+		Set<String> namespaces = new HashSet<String>();
+		namespaces.add(dbName + "." + collectionName);
+		if (spec.isArray("aggreg") && !addPipelineNamespaces(dbName, spec.getArray("aggreg"), namespaces))
+			return null;
+		return namespaces;
+	}
+
+	private static boolean addPipelineNamespaces(String dbName, BsonArray pipeline, Set<String> namespaces) {
+		for (BsonValue value : pipeline) {
+			if (!value.isDocument() || value.asDocument().isEmpty())
+				continue;
+			BsonDocument stage = value.asDocument();
+			String name = stage.getFirstKey();
+			BsonValue body = stage.get(name);
+			if ("$out".equals(name) || "$merge".equals(name))
+				return false;
+			if (("$lookup".equals(name) || "$graphLookup".equals(name)) && body.isDocument()) {
+				if (body.asDocument().isString("from"))
+					namespaces.add(dbName + "." + body.asDocument().getString("from").getValue());
+				if (body.asDocument().isArray("pipeline") && !addPipelineNamespaces(dbName, body.asDocument().getArray("pipeline"), namespaces))
+					return false;
+			} else if ("$unionWith".equals(name)) {
+				if (body.isString()) {
+					namespaces.add(dbName + "." + body.asString().getValue());
+				} else if (body.isDocument()) {
+					if (body.asDocument().isString("coll"))
+						namespaces.add(dbName + "." + body.asDocument().getString("coll").getValue());
+					if (body.asDocument().isArray("pipeline") && !addPipelineNamespaces(dbName, body.asDocument().getArray("pipeline"), namespaces))
+						return false;
+				}
+			} else if ("$facet".equals(name) && body.isDocument()) {
+				for (BsonValue facet : body.asDocument().values()) {
+					if (facet.isArray() && !addPipelineNamespaces(dbName, facet.asArray(), namespaces))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Takes the generations of namespaces before running the query with key, to cache its result later.
+	 */
+	Snapshot snapshot(String key, Set<String> namespaces, long ttl) {
+		long[] generations = new long[namespaces.size()];
+		int i = 0;
+		for (String namespace : namespaces) {
+			generations[i++] = this.generation(namespace).get();
+		}
+		return new Snapshot(key, namespaces, generations, ttl);
+	}
+
+	private AtomicLong generation(String namespace) {
+		return this.generations.computeIfAbsent(namespace, k -> new AtomicLong());
+	}
+
+	/**
+	 * Whether the result of the query with key is known to be too large to cache.
+	 */
+	synchronized boolean isTooLarge(String key) {
+		Entry entry = this.entries.get(key);
+		return entry != null && entry.rows == null && entry.expiresAt >= System.currentTimeMillis();
+	}
+
+	/**
+	 * The cached result of the query with key, decoded as its rows are read, or null if it is not cached or has expired.
+	 */
+	List<Document> get(String key) {
+		Entry entry;
+		synchronized (this) {
+			entry = this.entries.get(key);
+			if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+				this.remove(key);
+				entry = null;
+			}
+		}
+		if (entry == null || entry.rows == null) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		this.hits.incrementAndGet();
+		List<RawBsonDocument> rows = entry.rows;
+		return new AbstractList<Document>() {
+			@Override
+			public Document get(int index) {
+				return rows.get(index).decode(DOCUMENT_CODEC);
+			}
+			@Override
+			public int size() {
+				return rows.size();
+			}
+		};
+	}
+
+	/**
+	 * Encodes a row for caching.
+	 */
+	static RawBsonDocument toRaw(Document row) {
+		return new RawBsonDocument(row, DOCUMENT_CODEC);
+	}
+
+	/**
+	 * Caches the rows of a query, or with null rows remembers that its result is too large, unless a collection it
+	 * reads from was written to since the snapshot was taken.
+	 */
+	void put(Snapshot snapshot, List<RawBsonDocument> rows, long rowBytes) {
+		long entryBytes = rows != null ? rowBytes : MARKER_BYTES + 2 * snapshot.key.length();
+		synchronized (this) {
+			//invalidate bumps generations holding the same lock
+			int i = 0;
+			for (String namespace : snapshot.namespaces) {
+				if (this.generation(namespace).get() != snapshot.generations[i++])
+					return;
+			}
+			this.remove(snapshot.key);
+			this.entries.put(snapshot.key, new Entry(rows != null ? new ArrayList<RawBsonDocument>(rows) : null, entryBytes, System.currentTimeMillis() + snapshot.ttl, snapshot.namespaces));
+			this.bytes += entryBytes;
+			Iterator<Entry> eldest = this.entries.values().iterator();
+			while (this.bytes > this.maxBytes && eldest.hasNext()) {
+				this.bytes -= eldest.next().bytes;
+				eldest.remove();
+				this.evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private void remove(String key) {
+		Entry removed = this.entries.remove(key);
+		if (removed != null)
+			this.bytes -= removed.bytes;
+	}
+
+	/**
+	 * Drops the cached results that read from a collection that was written to.
+	 */
+	synchronized void invalidate(String namespace) {
+		this.generation(namespace).incrementAndGet();
+		Iterator<Entry> entries = this.entries.values().iterator();
+		while (entries.hasNext()) {
+			Entry entry = entries.next();
+			if (entry.namespaces.contains(namespace)) {
+				this.bytes -= entry.bytes;
+				entries.remove();
+			}
+		}
+	}
+
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	public double getHitRate() {
+		long lookups = this.hits.get() + this.misses.get();
+		return lookups == 0 ? 0 : (double) this.hits.get() / lookups;
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	public synchronized int getEntryCount() {
+		return this.entries.size();
+	}
+
+	/**
+	 * The size in bytes of the cached rows, plus a nominal size for each query remembered as too large.
+	 */
+	public synchronized long getSize() {
+		return this.bytes;
+	}
+
+}
@@ -10,7 +10,6 @@
  */
 package io.dirigible.mongodb.jdbc;
 
-import com.mongodb.Block;
 import com.mongodb.MongoClient;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCursor;
@@ -39,6 +38,7 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.text.DecimalFormat;
 import java.text.ParsePosition;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Calendar;
@@ -53,11 +53,14 @@ import org.bson.BsonType;
 import org.bson.BsonValue;
 import org.bson.Document;
 import org.bson.json.JsonWriterSettings;
+import org.bson.types.Decimal128;
 
 @Slf4j
 public class MongodbResultSet implements ResultSet {
 
   public static final int RAW_DOCUMENT_INDEX = -100;
+  //the number of documents the server returns in the first batch of a cursor, unless told otherwise
+  private static final int FIRST_BATCH_SIZE = 101;
 
   private Statement stmnt;
   private MongoIterable<Document> findIterable;
@@ -67,25 +70,96 @@ public class MongodbResultSet implements ResultSet {
   private boolean isClosed;
   private SQLWarning warning;
   private MongodbResultSetMetaData rsMetadata;
+  private boolean isMetadataBuilt;
+  private final ArrayDeque<Document> readAhead = new ArrayDeque<>();
+  private final String collectionName;
+  private final MongodbCursorTracker.TrackedCursor trackedCursor;
+  private final MongodbExecution execution;
+  private final MongodbQueryMetrics metrics;
+  private final long startNanos;
+  private long fetchNanos;
+  private final Object event;
+  private boolean wasNull;
 
   public MongodbResultSet(Statement stmnt, MongoIterable<Document> findIterable) throws SQLException {
+    this(stmnt, findIterable, stmnt.getConnection().unwrap(MongodbConnection.class).getCollectionName());
+  }
+
+  public MongodbResultSet(Statement stmnt, MongoIterable<Document> findIterable, String collectionName) throws SQLException {
+    this(stmnt, findIterable, collectionName, null, 0);
+  }
+
+  /**
+   * A result set that attributes the commands of its cursor to execution, if not null, and records its time to first
+   * row, fetch time and documents in the metrics of the execution. startNanos is when the execution started.
+   */
+  MongodbResultSet(Statement stmnt, MongoIterable<Document> findIterable, String collectionName, MongodbExecution execution, long startNanos) throws SQLException {
     this.stmnt = stmnt;
     this.findIterable = findIterable;
+    this.collectionName = collectionName;
+    this.execution = execution;
+    this.metrics = execution != null ? execution.getMetrics() : null;
+    this.startNanos = startNanos;
+    this.event = execution != null ? MongodbFlightRecorder.beginResultSet() : null;
     this.findIterator = this.findIterable.iterator();
+    this.trackedCursor = this.stmnt.getConnection().unwrap(MongodbConnection.class).getCursorTracker().register(this, this.findIterator, collectionName);
     this.isClosed = false;
-    this.buildMetadata();
+    this.rsMetadata = new MongodbResultSetMetaData(this.collectionName);
   }
 
-  private void buildMetadata() throws SQLException {
-    this.rsMetadata = new MongodbResultSetMetaData(this.stmnt.getConnection().unwrap(MongodbConnection.class).getCollectionName());
+  /**
+   * The columns of the result set, built on first use from the current document and the documents of the first batch,
+   * which are read ahead from the cursor and returned by next() in turn, so that the query is not run a second time.
+   */
+  private MongodbResultSetMetaData metadata() throws SQLException {
+    if (this.isMetadataBuilt) {
+      return this.rsMetadata;
+    }
+    this.isMetadataBuilt = true;
+    if (!this.isClosed) {
+      this.readAhead();
+    }
+    if (this.currentDoc != null) {
+      this.addColumns(this.currentDoc);
+    }
+    for (Document doc : this.readAhead) {
+      this.addColumns(doc);
+    }
+    return this.rsMetadata;
+  }
 
-    this.findIterable.forEach((Block<? super Document>) doc -> {
-      for (Entry<String, BsonValue> docEntry : doc.toBsonDocument(doc.getClass(), MongoClient.getDefaultCodecRegistry()).entrySet()) {
-        if(!docEntry.getKey().equalsIgnoreCase("_id")) {
-          this.rsMetadata.addColumn(docEntry.getKey(), docEntry.getValue().getBsonType());
-        }
+  private void addColumns(Document doc) {
+    for (Entry<String, BsonValue> docEntry : doc.toBsonDocument(doc.getClass(), MongoClient.getDefaultCodecRegistry()).entrySet()) {
+      if(!docEntry.getKey().equalsIgnoreCase("_id")) {
+        this.rsMetadata.addColumn(docEntry.getKey(), docEntry.getValue().getBsonType());
       }
-    });
+    }
+  }
+
+  private void readAhead() throws SQLException {
+    if (!this.trackedCursor.enter()) {
+      throw new SQLException("The cursor on " + this.collectionName + " was killed");
+    }
+    long start = this.execution != null ? System.nanoTime() : 0;
+    MongodbExecution previous = MongodbCommandListener.attribute(this.execution);
+    try {
+      while (this.readAhead.size() < FIRST_BATCH_SIZE && this.findIterator.hasNext()) {
+        this.readAhead.add(this.findIterator.next());
+      }
+    } finally {
+      this.trackedCursor.leave();
+      MongodbCommandListener.restore(previous);
+    }
+    if (this.execution != null) {
+      this.fetchNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Reports column, which buildMetadata does not derive from the documents, as a column of type.
+   */
+  void addColumn(String column, BsonType type) {
+    this.rsMetadata.addColumn(column, type);
   }
 
   @SuppressWarnings("unchecked")
@@ -104,25 +178,89 @@ public class MongodbResultSet implements ResultSet {
 
   @Override
   public boolean next() throws SQLException {
-    boolean hasNext = this.findIterator.hasNext();
-    if (hasNext) {
-      this.currentDoc = this.findIterator.next();
-      log.debug("Get document :" + this.currentDoc.toJson(new JsonWriterSettings(true)));
-      this.rowNumber++;
+    if (!this.trackedCursor.enter()) {
+      throw new SQLException("The cursor on " + this.collectionName + " was killed");
+    }
+    long start = this.execution != null ? System.nanoTime() : 0;
+    MongodbExecution previous = MongodbCommandListener.attribute(this.execution);
+    boolean hasNext;
+    try {
+      hasNext = !this.readAhead.isEmpty() || this.findIterator.hasNext();
+      if (hasNext) {
+        this.currentDoc = !this.readAhead.isEmpty() ? this.readAhead.poll() : this.findIterator.next();
+        if (log.isDebugEnabled()) {
+          log.debug("Get document :" + this.currentDoc.toJson(new JsonWriterSettings(true)));
+        }
+        this.rowNumber++;
+      }
+    } finally {
+      this.trackedCursor.leave();
+      MongodbCommandListener.restore(previous);
+    }
+    if (this.execution != null) {
+      long now = System.nanoTime();
+      if (this.metrics != null && this.rowNumber == 1 && hasNext) {
+        this.metrics.firstRow(now - this.startNanos);
+      }
+      this.fetchNanos += now - start;
     }
     return hasNext;
   }
 
   @Override
   public void close() throws SQLException {
-    this.findIterator.close();
+    if (this.isClosed) {
+      return;
+    }
+    //a killed cursor is closed already
+    if (this.trackedCursor.enter()) {
+      this.findIterator.close();
+      this.trackedCursor.leave();
+    }
+    this.trackedCursor.closed();
     this.isClosed = true;
+    if (this.execution != null) {
+      this.execution.spent(this.fetchNanos);
+      this.execution.finish();
+    }
+    if (this.metrics != null) {
+      this.metrics.fetched(this.fetchNanos, this.rowNumber);
+    }
+    if (this.event != null) {
+      MongodbFlightRecorder.endResultSet(this.event, this.execution, this.rowNumber);
+    }
+    if (this.stmnt instanceof MongodbStatement) {
+      ((MongodbStatement) this.stmnt).resultSetClosed(this);
+    }
   }
 
   @Override
   public boolean wasNull() throws SQLException {
-    // TODO Auto-generated method stub
-    return false;
+    return this.wasNull;
+  }
+
+  private Object value(String columnLabel) {
+    Object value = this.currentDoc.get(columnLabel);
+    this.wasNull = value == null;
+    return value;
+  }
+
+  /**
+   * The value of columnLabel as a number, whatever numeric type the document holds, or null if it is null.
+   */
+  private Number number(String columnLabel) throws SQLException {
+    Object value = this.value(columnLabel);
+    if (value == null || value instanceof Number) {
+      return (Number) value;
+    }
+    if (value instanceof Decimal128) {
+      return ((Decimal128) value).bigDecimalValue();
+    }
+    try {
+      return new BigDecimal(value.toString());
+    } catch (NumberFormatException e) {
+      throw new SQLException("The value of " + columnLabel + " is not a number: " + value, e);
+    }
   }
 
   @Override
@@ -130,87 +268,88 @@ public class MongodbResultSet implements ResultSet {
     if (columnIndex == RAW_DOCUMENT_INDEX) {
       return this.currentDoc.toJson();
     }
-    return this.getString(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getString(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public boolean getBoolean(int columnIndex) throws SQLException {
-    return this.getBoolean(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getBoolean(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public byte getByte(int columnIndex) throws SQLException {
-    return this.getByte(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getByte(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public short getShort(int columnIndex) throws SQLException {
-    return this.getShort(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getShort(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public int getInt(int columnIndex) throws SQLException {
-    return this.getInt(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getInt(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public long getLong(int columnIndex) throws SQLException {
-    return this.getLong(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getLong(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public float getFloat(int columnIndex) throws SQLException {
-    return this.getFloat(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getFloat(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public double getDouble(int columnIndex) throws SQLException {
-    return this.getDouble(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getDouble(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
-    return this.getBigDecimal(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getBigDecimal(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public byte[] getBytes(int columnIndex) throws SQLException {
-    return this.getBytes(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getBytes(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public Date getDate(int columnIndex) throws SQLException {
-    return this.getDate(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getDate(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public Time getTime(int columnIndex) throws SQLException {
-    return this.getTime(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getTime(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public Timestamp getTimestamp(int columnIndex) throws SQLException {
-    return this.getTimestamp(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getTimestamp(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public InputStream getAsciiStream(int columnIndex) throws SQLException {
-    return this.getAsciiStream(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getAsciiStream(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public InputStream getUnicodeStream(int columnIndex) throws SQLException {
-    return this.getUnicodeStream(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getUnicodeStream(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public InputStream getBinaryStream(int columnIndex) throws SQLException {
-    return this.getBinaryStream(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getBinaryStream(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public String getString(String columnLabel) throws SQLException {
-    return String.valueOf(this.currentDoc.get(columnLabel));
+    Object value = this.value(columnLabel);
+    return value != null ? String.valueOf(value) : null;
   }
 
   @Override
@@ -220,18 +359,21 @@ public class MongodbResultSet implements ResultSet {
 
   @Override
   public byte getByte(String columnLabel) throws SQLException {
-    return Byte.parseByte("" + this.currentDoc.get(columnLabel));
+    Number value = this.number(columnLabel);
+    return value != null ? value.byteValue() : 0;
   }
 
   @Override
   public short getShort(String columnLabel) throws SQLException {
-    return Short.parseShort("" + this.currentDoc.get(columnLabel));
+    Number value = this.number(columnLabel);
+    return value != null ? value.shortValue() : 0;
   }
 
   @Override
   public int getInt(String columnLabel) throws SQLException {
     if(this.currentDoc.containsKey(columnLabel)) {
-      return this.currentDoc.getInteger(columnLabel);
+      Number value = this.number(columnLabel);
+      return value != null ? value.intValue() : 0;
     }
 
     return -1;
@@ -240,7 +382,8 @@ public class MongodbResultSet implements ResultSet {
   @Override
   public long getLong(String columnLabel) throws SQLException {
     if(this.currentDoc.containsKey(columnLabel)) {
-      return this.currentDoc.getLong(columnLabel);
+      Number value = this.number(columnLabel);
+      return value != null ? value.longValue() : 0L;
     }
 
     return -1L;
@@ -248,12 +391,14 @@ public class MongodbResultSet implements ResultSet {
 
   @Override
   public float getFloat(String columnLabel) throws SQLException {
-    return Float.parseFloat("" + this.currentDoc.get(columnLabel));
+    Number value = this.number(columnLabel);
+    return value != null ? value.floatValue() : 0f;
   }
 
   @Override
   public double getDouble(String columnLabel) throws SQLException {
-    return this.currentDoc.getDouble(columnLabel);
+    Number value = this.number(columnLabel);
+    return value != null ? value.doubleValue() : 0d;
   }
 
   @Override
@@ -325,17 +470,17 @@ public class MongodbResultSet implements ResultSet {
 
   @Override
   public ResultSetMetaData getMetaData() throws SQLException {
-    return this.rsMetadata;
+    return this.metadata();
   }
 
   @Override
   public Object getObject(int columnIndex) throws SQLException {
-    return this.getObject(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getObject(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
   public Object getObject(String columnLabel) throws SQLException {
-    return this.currentDoc.get(columnLabel);
+    return this.value(columnLabel);
   }
 
   @Override
@@ -728,7 +873,7 @@ public class MongodbResultSet implements ResultSet {
 
   @Override
   public Array getArray(int columnIndex) throws SQLException {
-    return this.getArray(this.rsMetadata.getColumnLabel(columnIndex));
+    return this.getArray(this.metadata().getColumnLabel(columnIndex));
   }
 
   @Override
@@ -144,13 +144,13 @@ public class MongodbResultSetMetaData implements ResultSetMetaData {
 
 	@Override
 	public int getColumnType(int column) throws SQLException {
-		return this.getSqlType(this.keyMap.get(columnsOrder.get(column - 1)));
+		return getSqlType(this.keyMap.get(columnsOrder.get(column - 1)));
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public String getColumnTypeName(int column) throws SQLException {
-		return this.getSqlTypeName(this.keyMap.get(columnsOrder.get(column - 1)));
+		return getSqlTypeName(this.keyMap.get(columnsOrder.get(column - 1)));
 	}
 
 	@Override
@@ -173,13 +173,14 @@ public class MongodbResultSetMetaData implements ResultSetMetaData {
 		return this.bsonTojavaTypeMap.get(this.keyMap.get(columnsOrder.get(column - 1))).getCanonicalName();
 	}
 	
-	int getSqlType(BsonType bsonType){
+	static int getSqlType(BsonType bsonType){
 		switch(bsonType){
 			case OBJECT_ID: { return Types.OTHER;}
 			case ARRAY: { return Types.ARRAY;}
 			case BINARY: { return Types.BINARY; }
 			case BOOLEAN: { return Types.BOOLEAN;}
-			/*case DATE_TIME: { return Types.DATE}*/
+			case DATE_TIME: { return Types.TIMESTAMP; }
+			case DECIMAL128: { return Types.DECIMAL; }
 			case DOCUMENT: { return Types.OTHER; }
 			case DOUBLE: { return Types.DOUBLE; }
 			case INT32: {return Types.INTEGER; }
@@ -191,12 +192,13 @@ public class MongodbResultSetMetaData implements ResultSetMetaData {
 		return Integer.MIN_VALUE;
 	}
 	
-	String getSqlTypeName(BsonType bsonType){
+	static String getSqlTypeName(BsonType bsonType){
 		switch(bsonType){
 			case ARRAY: { return "ARRAY";}
 			case BINARY: { return "BINARY"; }
 			case BOOLEAN: { return "BOOLEAN";}
-			/*case DATE_TIME: { return Types.DATE}*/
+			case DATE_TIME: { return "TIMESTAMP"; }
+			case DECIMAL128: { return "DECIMAL"; }
 			case DOCUMENT: { return "OTHER"; }
 			case DOUBLE: { return "DOUBLE"; }
 			case INT32: {return "INTEGER"; }
@@ -0,0 +1,211 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * Infers the columns of a collection from a random sample of its documents and from its <code>$jsonSchema</code>
+ * validator, if it has one. Nested documents contribute a column per dotted path, and a field seen with different
+ * types gets the widest type that holds all of them.
+ */
+class MongodbSchemaInference {
+
+	static final int DEFAULT_SAMPLE_SIZE = 100;
+	private static final int MAX_DEPTH = 5;
+
+	private MongodbSchemaInference(){}
+
+	/**
+	 * A column of a collection: a top level field or the dotted path to a nested one. Its nullability is one of the
+	 * DatabaseMetaData constants columnNoNulls, columnNullable and columnNullableUnknown.
+	 */
+	static class Column {
+		final String name;
+		BsonType type;
+		int nullable;
+		final boolean isDeclared;
+		final boolean isTypeDeclared;
+		int presentCount;
+		Column(String name, BsonType type, int nullable, boolean isDeclared, boolean isTypeDeclared) {
+			this.name = name;
+			this.type = type;
+			this.nullable = nullable;
+			this.isDeclared = isDeclared;
+			this.isTypeDeclared = isTypeDeclared;
+		}
+	}
+
+	/**
+	 * The columns of a collection, declared ones first, then the sampled ones in the order they were first seen.
+	 */
+	static List<Column> infer(MongoDatabase db, String collectionName, int sampleSize) {
+		BsonDocument info = db.listCollections(BsonDocument.class).filter(new BsonDocument("name", new BsonString(collectionName))).first();
+		BsonDocument options = info != null && info.isDocument("options") ? info.getDocument("options") : new BsonDocument();
+		List<BsonDocument> sample = new ArrayList<BsonDocument>();
+		List<BsonDocument> pipeline = Collections.singletonList(new BsonDocument("$sample", new BsonDocument("size", new BsonInt32(sampleSize))));
+		db.getCollection(collectionName, BsonDocument.class).aggregate(pipeline).into(sample);
+		return infer(options, sample);
+	}
+
+	/**
+	 * The columns of a collection with options, as listCollections reports them, and the sampled documents. A sample
+	 * cannot show that a field is never null, so sampled columns are nullable if a document lacks them, and of unknown
+	 * nullability otherwise.
+	 */
+	static List<Column> infer(BsonDocument options, List<BsonDocument> sample) {
+		Map<String, Column> columns = new LinkedHashMap<String, Column>();
+		if (options.isDocument("validator") && options.getDocument("validator").isDocument("$jsonSchema")) {
+			addDeclared(columns, options.getDocument("validator").getDocument("$jsonSchema"), "", 0);
+		}
+		for (BsonDocument document : sample) {
+			addSampled(columns, document, "", 0);
+		}
+		for (Column column : columns.values()) {
+			if (!column.isDeclared && column.presentCount < sample.size())
+				column.nullable = DatabaseMetaData.columnNullable;
+			if (column.type == null)
+				column.type = BsonType.NULL;
+		}
+		return new ArrayList<Column>(columns.values());
+	}
+
+	private static void addDeclared(Map<String, Column> columns, BsonDocument schema, String prefix, int depth) {
+		if (!schema.isDocument("properties"))
+			return;
+		Set<String> required = new HashSet<String>();
+		if (schema.isArray("required")) {
+			for (BsonValue name : schema.getArray("required")) {
+				required.add(name.asString().getValue());
+			}
+		}
+		BsonDocument properties = schema.getDocument("properties");
+		for (String field : properties.keySet()) {
+			BsonDocument property = properties.get(field).isDocument() ? properties.getDocument(field) : new BsonDocument();
+			BsonType type = declaredType(property);
+			boolean isNullable = !required.contains(field) || allowsNull(property);
+			columns.put(prefix + field, new Column(prefix + field, type == BsonType.NULL ? null : type,
+					isNullable ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls, true, type != null));
+			if (type == BsonType.DOCUMENT && depth < MAX_DEPTH)
+				addDeclared(columns, property, prefix + field + ".", depth + 1);
+		}
+	}
+
+	/**
+	 * The widest of the types a <code>$jsonSchema</code> property allows through bsonType or type, or null if it does not say.
+	 */
+	private static BsonType declaredType(BsonDocument property) {
+		BsonValue declared = property.containsKey("bsonType") ? property.get("bsonType") : property.get("type");
+		if (declared == null)
+			return null;
+		List<BsonValue> names = declared.isArray() ? declared.asArray() : Collections.singletonList(declared);
+		BsonType type = null;
+		for (BsonValue name : names) {
+			if (name.isString())
+				type = widest(type, typeOf(name.asString().getValue()));
+		}
+		return type;
+	}
+
+	/**
+	 * Whether a <code>$jsonSchema</code> property lists null among the types it allows, as in <code>["string", "null"]</code>.
+	 */
+	private static boolean allowsNull(BsonDocument property) {
+		BsonValue declared = property.containsKey("bsonType") ? property.get("bsonType") : property.get("type");
+		if (declared == null)
+			return false;
+		List<BsonValue> names = declared.isArray() ? declared.asArray() : Collections.singletonList(declared);
+		return names.contains(new BsonString("null"));
+	}
+
+	private static BsonType typeOf(String alias) {
+		switch (alias) {
+		case "double": case "number": return BsonType.DOUBLE;
+		case "string": return BsonType.STRING;
+		case "object": return BsonType.DOCUMENT;
+		case "array": return BsonType.ARRAY;
+		case "binData": return BsonType.BINARY;
+		case "objectId": return BsonType.OBJECT_ID;
+		case "bool": case "boolean": return BsonType.BOOLEAN;
+		case "date": return BsonType.DATE_TIME;
+		case "null": return BsonType.NULL;
+		case "int": return BsonType.INT32;
+		case "long": case "integer": return BsonType.INT64;
+		case "timestamp": return BsonType.TIMESTAMP;
+		case "decimal": return BsonType.DECIMAL128;
+		default: return BsonType.STRING;
+		}
+	}
+
+	private static void addSampled(Map<String, Column> columns, BsonDocument document, String prefix, int depth) {
+		for (Map.Entry<String, BsonValue> field : document.entrySet()) {
+			String name = prefix + field.getKey();
+			BsonType type = field.getValue().getBsonType();
+			Column column = columns.get(name);
+			if (column == null) {
+				column = new Column(name, null, DatabaseMetaData.columnNullableUnknown, false, false);
+				columns.put(name, column);
+			}
+			if (type != BsonType.NULL)
+				column.presentCount++;
+			if (!column.isTypeDeclared)
+				column.type = widest(column.type, type);
+			if (type == BsonType.DOCUMENT && depth < MAX_DEPTH)
+				addSampled(columns, field.getValue().asDocument(), name + ".", depth + 1);
+		}
+	}
+
+	/**
+	 * The narrowest type that holds values of both types: the wider of two numeric types, and a string for any other mix.
+	 */
+	static BsonType widest(BsonType a, BsonType b) {
+		if (a == null || a == BsonType.NULL)
+			return b;
+		if (b == null || b == BsonType.NULL || a == b)
+			return a;
+		int rankA = numericRank(a);
+		int rankB = numericRank(b);
+		if (rankA > 0 && rankB > 0)
+			return rankA > rankB ? a : b;
+		return BsonType.STRING;
+	}
+
+	private static int numericRank(BsonType type) {
+		switch (type) {
+		case INT32: return 1;
+		case INT64: return 2;
+		case DOUBLE: return 3;
+		case DECIMAL128: return 4;
+		default: return 0;
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoCollection;
+
+/**
+ * A MongoClient shared by all connections opened with the same URI, together with the state that belongs to the
+ * client rather than to a connection. The client is closed when the last of its connections is closed.
+ */
+class MongodbSharedClient {
+
+	private static final Map<String, MongodbSharedClient> CLIENTS = new HashMap<String, MongodbSharedClient>();
+
+	private final String key;
+	private final MongoClient client;
+	private final MongodbClientMonitor monitor;
+	private int references;
+	private MongodbWriteCoalescer writeCoalescer;
+	private MongodbPointLookupLoader pointLookupLoader;
+	private MongodbNearCache nearCache;
+	private MongodbResultCache resultCache;
+	private final MongodbMetadataCache metadataCache = new MongodbMetadataCache();
+	private final Map<String, MongodbLocalReplica> localReplicas = new LinkedHashMap<String, MongodbLocalReplica>();
+
+	private MongodbSharedClient(String key, MongoClient client, MongodbClientMonitor monitor) {
+		this.key = key;
+		this.client = client;
+		this.monitor = monitor;
+	}
+
+	/**
+	 * The shared client for uri, created on first use. Every acquire must be matched by a release.
+	 */
+	static MongodbSharedClient acquire(MongoClientURI uri) {
+		synchronized (CLIENTS) {
+			MongodbSharedClient shared = CLIENTS.get(uri.getURI());
+			if (shared == null) {
+				//the command listener feeds the query metrics, see MongodbCommandListener, and the monitor the client MBean
+				MongodbClientMonitor monitor = new MongodbClientMonitor(uri.getHosts());
+				MongoClientOptions.Builder options = MongoClientOptions.builder()
+						.addCommandListener(MongodbCommandListener.INSTANCE)
+						.addConnectionPoolListener(monitor)
+						.addServerMonitorListener(monitor)
+						.addClusterListener(monitor);
+				shared = new MongodbSharedClient(uri.getURI(), new MongoClient(new MongoClientURI(uri.getURI(), options)), monitor);
+				CLIENTS.put(shared.key, shared);
+			}
+			shared.references++;
+			shared.monitor.setJdbcConnectionCount(shared.references);
+			return shared;
+		}
+	}
+
+	void release() {
+		synchronized (CLIENTS) {
+			this.monitor.setJdbcConnectionCount(--this.references);
+			if (this.references > 0) {
+				return;
+			}
+			CLIENTS.remove(this.key);
+		}
+		this.monitor.unregister();
+		synchronized (this) {
+			if (this.writeCoalescer != null) {
+				this.writeCoalescer.shutdown();
+			}
+			if (this.pointLookupLoader != null) {
+				this.pointLookupLoader.shutdown();
+			}
+			for (MongodbLocalReplica replica : this.localReplicas.values()) {
+				replica.stop();
+			}
+		}
+		this.client.close();
+	}
+
+	MongoClient getClient() {
+		return this.client;
+	}
+
+	MongodbClientMonitor getMonitor() {
+		return this.monitor;
+	}
+
+	static int getClientCount() {
+		synchronized (CLIENTS) {
+			return CLIENTS.size();
+		}
+	}
+
+	MongodbMetadataCache getMetadataCache() {
+		return this.metadataCache;
+	}
+
+	/**
+	 * The write coalescer of this client, created with the given settings by the first connection that asks for it.
+	 */
+	synchronized MongodbWriteCoalescer getWriteCoalescer(long windowMillis, int maxBatchSize) {
+		if (this.writeCoalescer == null) {
+			//as long as the bulk write could take before the driver gives up on it, if the socket timeout bounds that
+			MongoClientOptions options = this.client.getMongoClientOptions();
+			long timeoutMillis = options.getSocketTimeout() > 0 ? windowMillis + options.getServerSelectionTimeout() + options.getSocketTimeout() : 0;
+			this.writeCoalescer = new MongodbWriteCoalescer(windowMillis, maxBatchSize, timeoutMillis);
+		}
+		return this.writeCoalescer;
+	}
+
+	/**
+	 * The <code>_id</code> lookup batcher of this client, created with the given settings by the first connection that asks for it.
+	 */
+	synchronized MongodbPointLookupLoader getPointLookupLoader(long windowMillis, int maxBatchSize) {
+		if (this.pointLookupLoader == null) {
+			this.pointLookupLoader = new MongodbPointLookupLoader(windowMillis, maxBatchSize);
+		}
+		return this.pointLookupLoader;
+	}
+
+	/**
+	 * The near cache of this client, configured by the first connection that asks for it.
+	 */
+	synchronized MongodbNearCache getNearCache(String config) {
+		if (this.nearCache == null) {
+			this.nearCache = new MongodbNearCache(config);
+		}
+		return this.nearCache;
+	}
+
+	/**
+	 * The query result cache of this client, created with the given settings by the first connection that asks for it.
+	 */
+	synchronized MongodbResultCache getResultCache(long maxBytes, long defaultTtl) {
+		if (this.resultCache == null) {
+			this.resultCache = new MongodbResultCache(maxBytes, defaultTtl);
+		}
+		return this.resultCache;
+	}
+
+	/**
+	 * The local replica of a collection, started by the first connection that asks for it.
+	 */
+	synchronized MongodbLocalReplica getLocalReplica(MongoCollection<?> collection) {
+		MongodbLocalReplica replica = this.localReplicas.get(collection.getNamespace().getFullName());
+		if (replica == null) {
+			replica = new MongodbLocalReplica(collection);
+			this.localReplicas.put(collection.getNamespace().getFullName(), replica);
+		}
+		return replica;
+	}
+
+}
@@ -15,7 +15,14 @@
  */
 package io.dirigible.mongodb.jdbc;
 
+import io.dirigible.mongodb.jdbc.util.ListMongoIterable;
+import io.dirigible.mongodb.jdbc.util.ParallelScanMongoIterable;
+import io.dirigible.mongodb.jdbc.util.PrefetchedMongoIterable;
+
 import com.mongodb.Block;
+import com.mongodb.MongoException;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
 import com.mongodb.Function;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoCursor;
@@ -27,27 +34,59 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
 import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
 import org.bson.BsonType;
 import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
 
 import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
 
 @Slf4j
-public class MongodbStatement implements Statement {
+public class MongodbStatement implements Statement, MongodbAsyncStatement {
+	
+	//commands that change the collection they name or its indexes
+	private static final Set<String> METADATA_COMMANDS = new HashSet<>(Arrays.asList("create", "drop", "collMod", "createIndexes", "dropIndexes"));
 	
 	protected MongodbConnection conn;
 	protected boolean isClosed = false;
+	protected List<String> batch = new ArrayList<>();
+	protected boolean isPoolable = false;
+	private final String operationTag = "jdbc-" + new ObjectId().toHexString();
+	protected boolean closeOnCompletion = false;
+	//weakly held, so that result sets that are never closed can still be reclaimed, see MongodbCursorTracker
+	private final Set<ResultSet> openResultSets = Collections.newSetFromMap(new WeakHashMap<>());
+	private Executor asyncExecutor;
+	private WriteConcern writeConcern;
+	protected List<BsonValue> generatedKeys = new ArrayList<>();
+	private ReadConcern readConcern;
+	private final MongodbCommandStats commandStats = new MongodbCommandStats();
 	
 	public MongodbStatement(MongodbConnection conn){
 		this.conn = conn;
+		this.conn.statementCreated(this);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -69,14 +108,13 @@ public class MongodbStatement implements Statement {
 	 */
 	@Override
 	public ResultSet executeQuery(String sql) throws SQLException {
-		MongoDatabase db = this.conn.getMongoDb();
-
 		BsonDocument query = null;
 
 		if(sql.startsWith("SELECT count(*)")) {
 			String countStmt = sql.substring(sql.indexOf("{"), sql.lastIndexOf("}") + 1);
 			BsonDocument countQuery = BsonDocument.parse(countStmt);
-			long countValue = db.getCollection(countQuery.getString("find").getValue()).count(countQuery.getDocument("filter"));
+			MongoDatabase db = this.getReadDb(countQuery);
+			long countValue = this.getReadCollection(db, countQuery.getString("find").getValue(), countQuery).count(countQuery.getDocument("filter"));
 			log.info(String.valueOf(countValue));
 			Document doc = new Document("COUNT", countValue);
 			return new SingleMongodbResultSet(countQuery.getString("find").getValue(), "COUNT", doc, BsonType.INT64);
@@ -88,11 +126,240 @@ public class MongodbStatement implements Statement {
 			query = BsonDocument.parse(sql);
 		}
 
-		if((query.containsKey("filter") && query.containsKey("aggreg")) || (!query.containsKey("filter") && !query.containsKey("aggreg"))) {
-			throw new IllegalArgumentException("Specify either a find or an aggreg field");
+		return this.executeQuery(query);
+	}
+
+	/**
+	 * Executes an already parsed find, aggreg or explain specification.
+	 */
+	protected ResultSet executeQuery(BsonDocument query) throws SQLException {
+		if(query.containsKey("explain")) {
+			return this.executeExplain(query);
 		}
 
-		MongoIterable<Document> searchHits = null;
+		this.conn.used();
+		long start = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		MongodbQueryMetrics metrics = this.conn.isMetricsEnabled() ? MongodbMetrics.getInstance().forShape(this.getCollectionName(query), MongodbQueryShape.of(query)) : null;
+		MongodbExecution execution = new MongodbExecution(this.getCollectionName(query), query, false, metrics, this.commandStats);
+		Object event = MongodbFlightRecorder.beginExecute();
+		MongodbExecution previous = MongodbCommandListener.attribute(execution);
+		ResultSet rs;
+		try {
+			MongoIterable<Document> searchHits = this.findLocally(query);
+			if (searchHits == null) {
+				searchHits = this.lookup(query);
+			}
+			if (searchHits == null) {
+				searchHits = this.cachedSearchHits(query);
+			}
+			if (searchHits == null) {
+				searchHits = this.buildSearchHits(query);
+			}
+			rs = this.register(new MongodbResultSet(this, searchHits, this.getCollectionName(query), execution, startNanos));
+		} finally {
+			MongodbCommandListener.restore(previous);
+		}
+		long executeNanos = System.nanoTime() - startNanos;
+		execution.spent(executeNanos);
+		if (metrics != null) {
+			metrics.executed(executeNanos);
+		}
+		if (event != null) {
+			MongodbFlightRecorder.endExecute(event, execution, 0);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		long autoExplainThreshold = this.conn.getAutoExplainThreshold();
+		if (autoExplainThreshold >= 0 && elapsed > autoExplainThreshold) {
+			this.explainSlowQuery(query, elapsed);
+		}
+		return rs;
+	}
+
+	/**
+	 * Answers a find query from the local replica of its collection, if the connection keeps one and it is in sync, and
+	 * the connection did not write to the collection within readYourWritesWindow, since the replica may not have
+	 * applied that write yet. Returns null if the query is to be run as usual.
+	 */
+	private MongoIterable<Document> findLocally(BsonDocument query) {
+		if (!query.containsKey("find") || query.containsKey("readConcern") || this.readConcern != null)
+			return null;
+		MongodbLocalReplica replica = this.conn.getLocalReplicas().get(this.getCollectionName(query));
+		if (replica == null || !replica.getNamespace().equals(this.getReadDb(query).getName() + "." + this.getCollectionName(query)))
+			return null;
+		if (this.conn.isWithinReadYourWritesWindow(replica.getNamespace()))
+			return null;
+		List<Document> found = replica.find(query);
+		return found != null ? new ListMongoIterable<>(found) : null;
+	}
+
+	/**
+	 * The field of a plain <code>{find: ..., filter: {field: value}}</code> lookup of a single value, or null for any
+	 * other specification.
+	 */
+	private static String lookupField(BsonDocument query) {
+		for (String key : query.keySet()) {
+			if (!"find".equals(key) && !"filter".equals(key) && !"batchSize".equals(key) && !"readConcern".equals(key) && !"db".equals(key))
+				return null;
+		}
+		if (!query.containsKey("find") || !query.isDocument("filter"))
+			return null;
+		BsonDocument filter = query.getDocument("filter");
+		if (filter.size() != 1 || !MongodbPointLookupLoader.isPointLookupId(filter.get(filter.getFirstKey())))
+			return null;
+		return filter.getFirstKey();
+	}
+
+	/**
+	 * Answers a single value lookup from the near cache, or batches it with concurrent <code>_id</code> lookups in the
+	 * same collection, when the connection is set up for either. Returns null if the query is to be run as usual.
+	 */
+	private MongoIterable<Document> lookup(BsonDocument query) throws SQLException {
+		String field = lookupField(query);
+		MongodbNearCache nearCache = this.conn.getNearCache();
+		MongodbPointLookupLoader loader = "_id".equals(field) ? this.conn.getPointLookupLoader() : null;
+		if (field == null || (nearCache == null && loader == null))
+			return null;
+		MongoDatabase db = this.getReadDb(query);
+		String collectionName = this.getCollectionName(query);
+		MongoCollection<Document> collection = this.getReadCollection(db, collectionName, query);
+		BsonValue value = query.getDocument("filter").get(field);
+		//read concerns other than the default are not served from the cache
+		boolean isCached = nearCache != null && !query.containsKey("readConcern") && this.readConcern == null
+				&& nearCache.isCachedKey(collection, field, () -> this.conn.getIndexes(db, collectionName));
+		long generation = 0;
+		if (isCached) {
+			Document hit = nearCache.get(collection, field, value);
+			if (hit != null)
+				return new ListMongoIterable<>(Collections.singletonList(hit));
+			generation = nearCache.generation(collection);
+		}
+		Document found;
+		if (loader != null) {
+			MongodbCommandListener.delegated();
+			found = loader.load(collection.withDocumentClass(BsonDocument.class), value);
+		} else if (isCached) {
+			found = collection.find(query.getDocument("filter")).first();
+		} else {
+			return null;
+		}
+		if (isCached && found != null)
+			nearCache.put(collection, field, value, found, generation);
+		return new ListMongoIterable<>(found != null ? Collections.singletonList(found) : Collections.<Document>emptyList());
+	}
+
+	/**
+	 * Answers a find or aggreg query from the result cache of the connection, or runs it and caches its rows unless they
+	 * exceed the size limit for an entry, in which case the rows read so far are returned ahead of the rest of the
+	 * cursor. Returns null if the query is not to be cached and is to be run as usual.
+	 */
+	private MongoIterable<Document> cachedSearchHits(BsonDocument query) throws SQLException {
+		MongodbResultCache cache = this.conn.getResultCache();
+		if (cache == null || this.readConcern != null || query.containsKey("parallel") || (!query.containsKey("find") && !query.containsKey("aggreg")))
+			return null;
+		long ttl = query.containsKey("cacheTtl") ? query.getNumber("cacheTtl").longValue() : cache.getDefaultTtl();
+		if (ttl <= 0)
+			return null;
+		MongoDatabase db = this.getReadDb(query);
+		String dbName = db.getName();
+		Set<String> namespaces = MongodbResultCache.namespaces(dbName, this.getCollectionName(query), query);
+		if (namespaces == null)
+			return null;
+		String key = MongodbResultCache.key(dbName, db.getReadPreference(), query);
+		List<Document> cached = cache.get(key);
+		if (cached != null)
+			return new ListMongoIterable<>(cached);
+		if (cache.isTooLarge(key))
+			return null;
+		MongodbResultCache.Snapshot snapshot = cache.snapshot(key, namespaces, ttl);
+		List<Document> documents = new ArrayList<Document>();
+		List<RawBsonDocument> rows = new ArrayList<RawBsonDocument>();
+		long bytes = 0;
+		MongoIterable<Document> searchHits = this.buildSearchHits(query);
+		MongoCursor<Document> cursor = searchHits.iterator();
+		try {
+			while (cursor.hasNext()) {
+				Document document = cursor.next();
+				documents.add(document);
+				RawBsonDocument row = MongodbResultCache.toRaw(document);
+				bytes += row.getByteBuffer().remaining();
+				if (bytes > cache.getMaxEntryBytes()) {
+					cache.put(snapshot, null, 0);
+					MongoCursor<Document> rest = cursor;
+					cursor = null;
+					return new PrefetchedMongoIterable<>(documents, rest, searchHits);
+				}
+				rows.add(row);
+			}
+		} finally {
+			if (cursor != null)
+				cursor.close();
+		}
+		cache.put(snapshot, rows, bytes);
+		return new ListMongoIterable<>(documents);
+	}
+
+	/**
+	 * Input string: <code>{explain: {find: ..., filter: ...}, verbosity: "executionStats"}</code>, where explain holds a find
+	 * or aggreg specification. The result set has one row per stage of the winning plan, from the root stage down.
+	 */
+	private ResultSet executeExplain(BsonDocument query) throws SQLException {
+		BsonDocument spec = query.getDocument("explain");
+		String verbosity = query.containsKey("verbosity") ? query.getString("verbosity").getValue() : null;
+		MongoDatabase db = this.getReadDb(spec);
+		Document explain = db.runCommand(MongodbExplain.toExplainCommand(spec, this.getCollectionName(spec), verbosity), db.getReadPreference());
+		return this.register(new MongodbResultSet(this, new ListMongoIterable<>(MongodbExplain.planStages(explain)), this.getCollectionName(spec)));
+	}
+
+	/**
+	 * Explains a query that took longer than the auto-explain threshold of the connection in the background, and
+	 * warns about the collection scans in its plan.
+	 */
+	private void explainSlowQuery(BsonDocument query, long elapsed) {
+		String collectionName = this.getCollectionName(query);
+		BsonDocument explainCommand = MongodbExplain.toExplainCommand(query, collectionName, "queryPlanner");
+		MongoDatabase db = this.getReadDb(query);
+		this.conn.getExecutor().execute(() -> {
+			try {
+				List<Document> stages = MongodbExplain.planStages(db.runCommand(explainCommand, db.getReadPreference()));
+				if (!MongodbExplain.collectionScans(stages).isEmpty()) {
+					log.warn("Query on " + collectionName + " took " + elapsed + " ms and scans the whole collection: " + query.toJson());
+				} else {
+					log.debug("Query on " + collectionName + " took " + elapsed + " ms with plan " + stages);
+				}
+			} catch (MongoException e) {
+				log.debug("Could not explain slow query " + query.toJson(), e);
+			}
+		});
+	}
+
+	/**
+	 * The database to query: the one named in the db field of a specification, or else the catalog of the connection.
+	 */
+	protected MongoDatabase getReadDb(BsonDocument query) {
+		return this.conn.getReadMongoDb(query.isString("db") ? query.getString("db").getValue() : null);
+	}
+
+	/**
+	 * The database an update command names in its db field, or else the catalog of the connection.
+	 */
+	private MongoDatabase getWriteDb(BsonDocument updateDocument) {
+		return this.conn.getMongoDb(updateDocument.isString("db") ? updateDocument.getString("db").getValue() : null);
+	}
+
+	/**
+	 * The collection to query, with the read concern of the specification or else of this statement, if any.
+	 */
+	protected MongoCollection<Document> getReadCollection(MongoDatabase db, String collectionName, BsonDocument query) {
+		MongoCollection<Document> collection = db.getCollection(collectionName);
+		ReadConcern readConcern = query.containsKey("readConcern") ? MongodbWriteCommands.toReadConcern(query.getDocument("readConcern")) : this.readConcern;
+		return readConcern != null ? collection.withReadConcern(readConcern) : collection;
+	}
+
+	/**
+	 * The collection named in the find field of a specification, or else the collection of the connection.
+	 */
+	protected String getCollectionName(BsonDocument query) {
 		String collectionName = query.containsKey("find") ? query.getString("find").getValue() : null;
 		if (collectionName == null) {
 			collectionName = this.conn.getCollectionName();//fallback if any
@@ -101,17 +368,46 @@ public class MongodbStatement implements Statement {
 		if (collectionName == null) {
 			throw new IllegalArgumentException("Specifying a collection is mandatory for query operations");
 		}
+		return collectionName;
+	}
+
+	/**
+	 * Turns a find or aggreg specification into the iterable that executes it.
+	 */
+	protected MongoIterable<Document> buildSearchHits(BsonDocument query) {
+		MongoDatabase db = this.getReadDb(query);
+
+		if((query.containsKey("filter") && query.containsKey("aggreg")) || (!query.containsKey("filter") && !query.containsKey("aggreg"))) {
+			throw new IllegalArgumentException("Specify either a find or an aggreg field");
+		}
+
+		MongoIterable<Document> searchHits = null;
+		String collectionName = this.getCollectionName(query);
 
 		if(query.containsKey("filter")) {
 			BsonDocument filter = query.containsKey("filter") ? query.getDocument("filter") : null;
 
-			if (filter == null) {
-				searchHits = db.getCollection(collectionName).find();
+			if (query.containsKey("parallel")) {
+				if (query.containsKey("limit") || query.containsKey("sort")) {
+					throw new IllegalArgumentException("A parallel scan cannot be combined with limit or sort");
+				}
+				MongoCollection<Document> collection = this.getReadCollection(db, collectionName, query);
+				List<BsonDocument> partitions = ParallelScanMongoIterable.partition(collection, filter, query.getNumber("parallel").intValue());
+				searchHits = new ParallelScanMongoIterable(collection, partitions, this.conn.getExecutor());
+				MongodbCommandListener.delegated();
+			} else if (filter == null) {
+				searchHits = this.getReadCollection(db, collectionName, query).find();
 			} else {
-				searchHits = db.getCollection(collectionName).find(filter);
+				searchHits = this.getReadCollection(db, collectionName, query).find(filter);
 			}
-			if (query.containsKey("batchSize")) {
-				searchHits.batchSize(query.getInt32("batchSize").getValue());
+			Integer batchSize = this.batchSize(db, query, collectionName);
+			if (batchSize != null) {
+				searchHits.batchSize(batchSize);
+			}
+
+			if (searchHits instanceof FindIterable) {
+				//lets cancel() find the operation on the server
+				((FindIterable<Document>) searchHits).comment(this.operationTag);
 			}
 
 			if (query.containsKey("limit")) {
@@ -124,13 +420,67 @@ public class MongodbStatement implements Statement {
 		} else if(query.containsKey("aggreg")) {
 			List<Bson> aggreg = query.containsKey("aggreg") ? query.getArray("aggreg").stream().map(BsonValue::asDocument).collect(Collectors.toList()) : null;
 
-			searchHits = db.getCollection(collectionName).aggregate(aggreg).allowDiskUse(true);
+			searchHits = this.getReadCollection(db, collectionName, query).aggregate(aggreg).allowDiskUse(true);
 
-			if (query.containsKey("batchSize")) {
-				searchHits.batchSize(query.getInt32("batchSize").getValue());
+			Integer batchSize = this.batchSize(db, query, collectionName);
+			if (batchSize != null) {
+				searchHits.batchSize(batchSize);
 			}
 		}
-		return new MongodbResultSet(this, searchHits);
+		return searchHits;
+	}
+
+	/**
+	 * The batchSize of a specification, or else one sized by the statistics of its collection to about batchSizeBytes
+	 * per batch. For an aggreg the input documents are sized, which the pipeline may make bigger or smaller.
+	 */
+	private Integer batchSize(MongoDatabase db, BsonDocument query, String collectionName) {
+		if (query.containsKey("batchSize")) {
+			return query.getInt32("batchSize").getValue();
+		}
+		return this.conn.getAutoBatchSize(db, collectionName);
+	}
+
+	/**
+	 * Publishes the documents of a find or aggreg specification with backpressure. Unless the specification sets a
+	 * batchSize, the cursor batch size follows the demand of the subscriber.
+	 */
+	public Publisher<Document> executeQueryPublisher(String sql) throws SQLException {
+		if(sql==null || sql.length()<1)
+			throw new IllegalArgumentException();
+		BsonDocument query = BsonDocument.parse(sql);
+		Integer batchSize = query.containsKey("batchSize") ? query.getInt32("batchSize").getValue() : null;
+		return new MongodbQueryPublisher(() -> this.buildSearchHits(query), batchSize, this.conn.getExecutor());
+	}
+
+	/**
+	 * Splits a find specification with a <code>parallel</code> option into disjoint <code>_id</code> ranges and returns
+	 * one result set per range, so that the caller can consume the partitions concurrently.
+	 */
+	public List<ResultSet> executePartitionedQuery(String sql) throws SQLException {
+		if(sql==null || sql.length()<1)
+			throw new IllegalArgumentException();
+		BsonDocument query = BsonDocument.parse(sql);
+		if(!query.containsKey("parallel")) {
+			throw new IllegalArgumentException("Specify the number of partitions in a parallel field");
+		}
+		if(query.containsKey("aggreg") || query.containsKey("limit") || query.containsKey("sort")) {
+			throw new IllegalArgumentException("A parallel scan cannot be combined with aggreg, limit or sort");
+		}
+		String collectionName = this.getCollectionName(query);
+		MongoDatabase db = this.getReadDb(query);
+		MongoCollection<Document> collection = this.getReadCollection(db, collectionName, query);
+		BsonDocument filter = query.containsKey("filter") ? query.getDocument("filter") : null;
+		List<ResultSet> resultSets = new ArrayList<>();
+		for (BsonDocument partition : ParallelScanMongoIterable.partition(collection, filter, query.getNumber("parallel").intValue())) {
+			FindIterable<Document> searchHits = collection.find(partition);
+			Integer batchSize = this.batchSize(db, query, collectionName);
+			if (batchSize != null) {
+				searchHits.batchSize(batchSize);
+			}
+			resultSets.add(this.register(new MongodbResultSet(this, searchHits, collectionName)));
+		}
+		return resultSets;
 	}
 
 	/**
@@ -143,20 +493,227 @@ public class MongodbStatement implements Statement {
 			throw new IllegalArgumentException();
 		else
 			updateDocument = BsonDocument.parse(sql);
-		
-		Document response = this.conn.getMongoDb().runCommand(updateDocument);
+		this.generatedKeys.clear();
+		return this.executeUpdate(updateDocument);
+	}
+
+	/**
+	 * Runs an already parsed update command. Documents of insert commands that lack an <code>_id</code> get an ObjectId
+	 * generated on the client, and the ids of inserted documents are added to the generated keys of this statement.
+	 * Near cached documents and cached results of the collection the command names are dropped afterwards. A db field
+	 * runs the command in that database instead of the catalog of the connection.
+	 */
+	protected int executeUpdate(BsonDocument updateDocument) throws SQLException {
+		MongoDatabase db = this.getWriteDb(updateDocument);
+		if (updateDocument.containsKey("db")) {
+			updateDocument = updateDocument.clone();
+			updateDocument.remove("db");
+		}
+		this.conn.used();
+		long startNanos = System.nanoTime();
+		String collectionName = targetCollection(updateDocument);
+		MongodbQueryMetrics metrics = this.conn.isMetricsEnabled() && !updateDocument.isEmpty() ? MongodbMetrics.getInstance().forShape(collectionName, MongodbQueryShape.ofCommand(updateDocument)) : null;
+		MongodbExecution execution = new MongodbExecution(collectionName, updateDocument, true, metrics, this.commandStats);
+		Object event = MongodbFlightRecorder.beginExecute();
+		MongodbExecution previous = MongodbCommandListener.attribute(execution);
+		int updateCount = 0;
+		try {
+			updateCount = this.executeWrite(db, updateDocument);
+			return updateCount;
+		} finally {
+			MongodbCommandListener.restore(previous);
+			this.invalidateCaches(db, updateDocument);
+			long executeNanos = System.nanoTime() - startNanos;
+			execution.spent(executeNanos);
+			execution.finish();
+			if (metrics != null)
+				metrics.executed(executeNanos);
+			if (event != null)
+				MongodbFlightRecorder.endExecute(event, execution, Math.max(updateCount, 0));
+		}
+	}
+
+	/**
+	 * The collection an update command names, or an empty string if it names none.
+	 */
+	private static String targetCollection(BsonDocument updateDocument) {
+		if (updateDocument.isEmpty())
+			return "";
+		BsonValue target = updateDocument.get(updateDocument.getFirstKey());
+		return target.isString() ? target.asString().getValue() : "";
+	}
+
+	/**
+	 * Drops the near cached documents and cached results of the collection an update command names, once the command
+	 * is done, and its cached metadata if the command changed the collection or its indexes. A cached read that overlapped the command is not kept
+	 * either, see MongodbNearCache.put.
+	 */
+	private void invalidateCaches(MongoDatabase db, BsonDocument updateDocument) {
+		if (updateDocument.isEmpty() || !updateDocument.get(updateDocument.getFirstKey()).isString())
+			return;
+		String namespace = db.getName() + "." + updateDocument.getString(updateDocument.getFirstKey()).getValue();
+		if (METADATA_COMMANDS.contains(MongodbWriteCommands.commandName(updateDocument)))
+			this.conn.getMetadataCache().refresh(namespace);
+		MongodbNearCache nearCache = this.conn.getNearCache();
+		MongodbResultCache resultCache = this.conn.getResultCache();
+		if (nearCache != null || resultCache != null) {
+			if (nearCache != null)
+				nearCache.invalidate(namespace);
+			if (resultCache != null)
+				resultCache.invalidate(namespace);
+		}
+	}
+
+	private int executeWrite(MongoDatabase db, BsonDocument updateDocument) throws SQLException {
+		if (MongodbWriteCommands.INSERT.equals(MongodbWriteCommands.commandName(updateDocument))) {
+			updateDocument = MongodbWriteCommands.assignIds(updateDocument, this.generatedKeys);
+		}
+		WriteConcern writeConcern = updateDocument.containsKey("writeConcern") ? MongodbWriteCommands.toWriteConcern(updateDocument.getDocument("writeConcern")) : this.writeConcern;
+		if (writeConcern != null && !writeConcern.isAcknowledged()) {
+			return this.executeUnacknowledged(db, updateDocument, writeConcern);
+		}
+		if (this.conn.getWriteCoalescer() != null && isCoalescable(updateDocument)) {
+			MongoCollection<BsonDocument> collection = db.getCollection(updateDocument.getString(MongodbWriteCommands.INSERT).getValue(), BsonDocument.class);
+			if (writeConcern != null)
+				collection = collection.withWriteConcern(writeConcern);
+			List<BsonDocument> documents = new ArrayList<BsonDocument>();
+			for (BsonValue document : updateDocument.getArray("documents")) {
+				documents.add(document.asDocument());
+			}
+			MongodbCommandListener.delegated();
+			int inserted = this.conn.getWriteCoalescer().insert(collection, documents);
+			this.conn.writePerformed(collection.getNamespace().getFullName());
+			return inserted;
+		}
+		if (writeConcern != null && !updateDocument.containsKey("writeConcern")) {
+			updateDocument = updateDocument.clone().append("writeConcern", writeConcern.asDocument());
+		}
+		Document response = db.runCommand(updateDocument);
+		this.conn.writePerformed(db.getName() + "." + targetCollection(updateDocument));
 		int updatedDocuments = 0;
 		if(response!=null && response.get("ok")!=null){
-			updatedDocuments = response.getInteger("nModified");
+			updatedDocuments = response.getInteger(response.containsKey("nModified") ? "nModified" : "n", 0);
 			//TODO operation atomicity concerns? /errors/
 		}
 		return updatedDocuments;
 	}
 
+	/**
+	 * Whether an update command is an insert that can join an unordered bulk write of other connections without a
+	 * change in outcome: it has no options besides a write concern, and either one document or ordered set to false.
+	 */
+	private static boolean isCoalescable(BsonDocument updateDocument) {
+		if (!MongodbWriteCommands.INSERT.equals(MongodbWriteCommands.commandName(updateDocument)))
+			return false;
+		for (String key : updateDocument.keySet()) {
+			if (!MongodbWriteCommands.INSERT.equals(key) && !"documents".equals(key) && !"ordered".equals(key) && !"writeConcern".equals(key))
+				return false;
+		}
+		return updateDocument.getArray("documents").size() == 1 || !updateDocument.getBoolean("ordered", BsonBoolean.TRUE).getValue();
+	}
+
+	/**
+	 * Sends a write without waiting for the server to acknowledge it. Insert, update and delete commands go through the
+	 * unacknowledged bulk write path of the driver, which does not even wait for a reply, unless they have options the
+	 * bulk write API cannot express; those and other commands are run with the unacknowledged write concern.
+	 */
+	private int executeUnacknowledged(MongoDatabase db, BsonDocument updateDocument, WriteConcern writeConcern) {
+		if (MongodbWriteCommands.isBulkWritable(updateDocument)) {
+			String collectionName = updateDocument.getString(MongodbWriteCommands.commandName(updateDocument)).getValue();
+			db.getCollection(collectionName, BsonDocument.class).withWriteConcern(writeConcern)
+					.bulkWrite(MongodbWriteCommands.toWriteModels(updateDocument), MongodbWriteCommands.toBulkWriteOptions(updateDocument));
+		} else {
+			BsonDocument command = updateDocument.clone();
+			command.put("writeConcern", writeConcern.asDocument());
+			db.runCommand(command);
+		}
+		this.conn.writePerformed(db.getName() + "." + targetCollection(updateDocument));
+		return SUCCESS_NO_INFO;
+	}
+
+	/**
+	 * The write concern of update commands that do not specify one. Null, the default, leaves it to the server;
+	 * an unacknowledged concern such as <code>WriteConcern.UNACKNOWLEDGED</code> makes executeUpdate and
+	 * executeBatch return without waiting for the writes, reporting SUCCESS_NO_INFO as update count.
+	 */
+	public void setWriteConcern(WriteConcern writeConcern) {
+		this.writeConcern = writeConcern;
+	}
+
+	public WriteConcern getWriteConcern() {
+		return this.writeConcern;
+	}
+
+	/**
+	 * The read concern of queries that do not specify one. Null, the default, leaves it to the server.
+	 */
+	public void setReadConcern(ReadConcern readConcern) {
+		this.readConcern = readConcern;
+	}
+
+	public ReadConcern getReadConcern() {
+		return this.readConcern;
+	}
+
+	/**
+	 * Clears what a caller set on the statement or what its last execution left, so that the statement cache can hand
+	 * it out again as if it were new.
+	 */
+	protected void reset() {
+		this.closeOnCompletion = false;
+		this.writeConcern = null;
+		this.readConcern = null;
+		this.asyncExecutor = null;
+		this.generatedKeys.clear();
+	}
+
+	/**
+	 * The server round trips, reply sizes and client side time of the commands this statement ran, over all its
+	 * executions. A query counts once its result set is closed.
+	 */
+	public MongodbCommandStats getCommandStats() {
+		return this.commandStats;
+	}
+
+	/**
+	 * Closes the result sets of this statement and their cursors. The connection stays open for other statements.
+	 */
 	@Override
 	public void close() throws SQLException {
 		this.isClosed = true;
-		this.conn.close();
+		this.closeResultSets();
+	}
+
+	protected void closeResultSets() throws SQLException {
+		List<ResultSet> resultSets;
+		synchronized (this.openResultSets) {
+			resultSets = new ArrayList<>(this.openResultSets);
+			this.openResultSets.clear();
+		}
+		for (ResultSet rs : resultSets) {
+			rs.close();
+		}
+	}
+
+	protected <T extends ResultSet> T register(T rs) {
+		synchronized (this.openResultSets) {
+			this.openResultSets.add(rs);
+		}
+		return rs;
+	}
+
+	/**
+	 * Called by the result sets of this statement when they are closed.
+	 */
+	void resultSetClosed(ResultSet rs) throws SQLException {
+		boolean isCompleted;
+		synchronized (this.openResultSets) {
+			this.openResultSets.remove(rs);
+			isCompleted = this.openResultSets.isEmpty();
+		}
+		if (isCompleted && this.closeOnCompletion && !this.isClosed) {
+			this.close();
+		}
 	}
 
 	@Override
@@ -197,9 +754,28 @@ public class MongodbStatement implements Statement {
 		// TODO Auto-generated method stub
 	}
 
+	/**
+	 * Closes the cursors of the open result sets and kills the find operations of this statement that are still running on the server.
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public void cancel() throws SQLException {
-		// TODO Auto-generated method stub
+		this.closeResultSets();
+		try {
+			MongoDatabase admin = this.conn.getAdminDb();
+			BsonArray tagged = new BsonArray(Arrays.asList(
+					new BsonDocument("query.$comment", new BsonString(this.operationTag)),
+					new BsonDocument("command.comment", new BsonString(this.operationTag))));
+			Document inprog = admin.runCommand(new BsonDocument("currentOp", new BsonInt32(1)).append("$or", tagged));
+			List<Document> ops = (List<Document>) inprog.get("inprog");
+			if (ops != null) {
+				for (Document op : ops) {
+					admin.runCommand(new Document("killOp", 1).append("op", op.get("opid")));
+				}
+			}
+		} catch (MongoException e) {
+			log.warn("Could not kill the server operations of statement " + this.operationTag, e);
+		}
 	}
 
 	@Override
@@ -270,20 +846,133 @@ public class MongodbStatement implements Statement {
 
 	@Override
 	public void addBatch(String sql) throws SQLException {
-		// TODO Auto-generated method stub
-
+		if(sql==null || sql.length()<1)
+			throw new IllegalArgumentException();
+		this.batch.add(sql);
 	}
 
 	@Override
 	public void clearBatch() throws SQLException {
-		// TODO Auto-generated method stub
-
+		this.batch.clear();
 	}
 
 	@Override
 	public int[] executeBatch() throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		int[] updateCounts = new int[this.batch.size()];
+		this.generatedKeys.clear();
+		Object event = MongodbFlightRecorder.beginBatch();
+		long bytesBefore = event != null ? this.commandStats.getReplyBytes() : 0;
+		String collectionName = null;
+		try {
+			for (int i = 0; i < updateCounts.length; i++) {
+				BsonDocument updateDocument = BsonDocument.parse(this.batch.get(i));
+				if (event != null) {
+					String target = targetCollection(updateDocument);
+					collectionName = collectionName == null || collectionName.equals(target) ? target : "";
+				}
+				updateCounts[i] = this.executeUpdate(updateDocument);
+			}
+		} finally {
+			this.batch.clear();
+			if (event != null) {
+				long rows = 0;
+				for (int updateCount : updateCounts) {
+					rows += Math.max(updateCount, 0);
+				}
+				MongodbFlightRecorder.endBatch(event, collectionName != null ? collectionName : "", updateCounts.length, rows, this.commandStats.getReplyBytes() - bytesBefore);
+			}
+		}
+		return updateCounts;
+	}
+
+	@Override
+	public CompletableFuture<ResultSet> executeQueryAsync(String sql) {
+		return this.executeAsync(stmnt -> stmnt.executeQuery(sql));
+	}
+
+	@Override
+	public CompletableFuture<Integer> executeUpdateAsync(String sql) {
+		return this.executeAsync(stmnt -> stmnt.executeUpdate(sql));
+	}
+
+	@Override
+	public CompletableFuture<int[]> executeBatchAsync() {
+		List<String> submitted = new ArrayList<>(this.batch);
+		this.batch.clear();
+		return this.executeAsync(stmnt -> {
+			stmnt.batch.addAll(submitted);
+			return stmnt.executeBatch();
+		});
+	}
+
+	@Override
+	public void setAsyncExecutor(Executor executor) {
+		this.asyncExecutor = executor;
+	}
+
+	private interface StatementOperation<T> {
+		T execute(MongodbStatement stmnt) throws SQLException;
+	}
+
+	/**
+	 * Runs the operation on a statement of its own, so that cancelling the future cancels only that operation. The
+	 * statement is closed when the operation is done, or with the result set it returns.
+	 */
+	private <T> CompletableFuture<T> executeAsync(StatementOperation<T> operation) {
+		MongodbStatement stmnt = new MongodbStatement(this.conn);
+		stmnt.writeConcern = this.writeConcern;
+		stmnt.readConcern = this.readConcern;
+		stmnt.closeOnCompletion = true;
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled()) {
+				try {
+					stmnt.cancel();
+				} catch (SQLException e) {
+					log.warn("Could not cancel async operation", e);
+				}
+			}
+		});
+		Executor executor = this.asyncExecutor != null ? this.asyncExecutor : this.conn.getAsyncExecutor();
+		try {
+			executor.execute(() -> {
+				if (future.isDone()) {
+					stmnt.closeQuietly();
+					return;
+				}
+				try {
+					T result = operation.execute(stmnt);
+					if (!future.complete(result) && result instanceof ResultSet) {
+						((ResultSet) result).close();
+					}
+					//a result set that is not one of its own, such as a count, does not close the statement
+					if (!(result instanceof ResultSet) || !stmnt.hasOpenResultSets()) {
+						stmnt.closeQuietly();
+					}
+				} catch (Throwable t) {
+					stmnt.closeQuietly();
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			stmnt.closeQuietly();
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private boolean hasOpenResultSets() {
+		synchronized (this.openResultSets) {
+			return !this.openResultSets.isEmpty();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			this.close();
+		} catch (SQLException e) {
+			log.warn("Could not close async statement", e);
+		}
 	}
 
 	@Override
@@ -297,15 +986,25 @@ public class MongodbStatement implements Statement {
 		return false;
 	}
 
+	/**
+	 * The <code>_id</code> of every document inserted by the last executeUpdate or executeBatch, in insert order, as
+	 * the single column <code>_id</code>.
+	 */
 	@Override
 	public ResultSet getGeneratedKeys() throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		List<Document> keys = new ArrayList<>(this.generatedKeys.size());
+		for (BsonValue id : this.generatedKeys) {
+			keys.add(new Document("_id", MongodbWriteCommands.idToValue(id)));
+		}
+		MongodbResultSet rs = new MongodbResultSet(this, new ListMongoIterable<Document>(keys), this.conn.getCollectionName());
+		rs.addColumn("_id", this.generatedKeys.isEmpty() ? BsonType.STRING : MongodbWriteCommands.idValueType(this.generatedKeys.get(0).getBsonType()));
+		return rs;
 	}
 
 	@Override
 	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-		throw new SQLFeatureNotSupportedException();
+		//the ids of inserted documents are always known
+		return this.executeUpdate(sql);
 	}
 
 	@Override
@@ -346,26 +1045,22 @@ public class MongodbStatement implements Statement {
 
 	@Override
 	public void setPoolable(boolean poolable) throws SQLException {
-		// TODO Auto-generated method stub
-
+		this.isPoolable = poolable;
 	}
 
 	@Override
 	public boolean isPoolable() throws SQLException {
-		// TODO Auto-generated method stub
-		return false;
+		return this.isPoolable;
 	}
 
 	@Override
 	public void closeOnCompletion() throws SQLException {
-		// TODO Auto-generated method stub
-
+		this.closeOnCompletion = true;
 	}
 
 	@Override
 	public boolean isCloseOnCompletion() throws SQLException {
-		// TODO Auto-generated method stub
-		return false;
+		return this.closeOnCompletion;
 	}
 
 }
@@ -0,0 +1,203 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bson.BsonDocument;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Group commit for inserts: inserts into the same collection with the same write concern, issued by any connection of
+ * a shared client, are collected for a short window or until a batch size cap is reached, and sent as one unordered
+ * bulk write. Every caller waits for the bulk write and gets the outcome of its own documents: as with an insert
+ * command, the number of them that were inserted, not counting those the server rejected, e.g. for a duplicate key.
+ */
+class MongodbWriteCoalescer {
+
+	private final long windowMillis;
+	private final int maxBatchSize;
+	private final long timeoutMillis;
+	private final ConcurrentHashMap<String, Batch> pending = new ConcurrentHashMap<String, Batch>();
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService flusher;
+
+	private static class Entry {
+		final List<BsonDocument> documents;
+		final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+		Entry(List<BsonDocument> documents) {
+			this.documents = documents;
+		}
+	}
+
+	private static class Batch {
+		final MongoCollection<BsonDocument> collection;
+		final List<Entry> entries = new ArrayList<Entry>();
+		int size;
+		boolean isClosed;
+		Batch(MongoCollection<BsonDocument> collection) {
+			this.collection = collection;
+		}
+	}
+
+	/**
+	 * Callers wait at most timeoutMillis for the bulk write of their documents, or as long as it takes if 0.
+	 */
+	MongodbWriteCoalescer(long windowMillis, int maxBatchSize, long timeoutMillis) {
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.timeoutMillis = timeoutMillis;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "mongodb-jdbc-write-coalescer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.flusher = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "mongodb-jdbc-write-flusher");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Inserts documents as part of the next bulk write into collection, and waits for it. Returns the number of documents
+	 * inserted.
+	 */
+	int insert(MongoCollection<BsonDocument> collection, List<BsonDocument> documents) throws SQLException {
+		String key = collection.getNamespace().getFullName() + collection.getWriteConcern().asDocument().toJson();
+		Entry entry = new Entry(documents);
+		Batch full = null;
+		while (true) {
+			Batch batch = this.pending.computeIfAbsent(key, k -> {
+				Batch created = new Batch(collection);
+				this.scheduler.schedule(() -> this.flusher.execute(() -> this.flushIfOpen(key, created)), this.windowMillis, TimeUnit.MILLISECONDS);
+				return created;
+			});
+			synchronized (batch) {
+				if (batch.isClosed) {
+					this.pending.remove(key, batch);
+					continue;
+				}
+				batch.entries.add(entry);
+				batch.size += documents.size();
+				if (batch.size >= this.maxBatchSize) {
+					batch.isClosed = true;
+					this.pending.remove(key, batch);
+					full = batch;
+				}
+			}
+			break;
+		}
+		if (full != null) {
+			this.flush(full);
+		}
+		try {
+			return this.timeoutMillis > 0 ? entry.result.get(this.timeoutMillis, TimeUnit.MILLISECONDS) : entry.result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a coalesced write", e);
+		} catch (TimeoutException e) {
+			throw new SQLTimeoutException("No outcome of the coalesced write into " + collection.getNamespace() + " after " + this.timeoutMillis + " ms; the documents may still be inserted", e);
+		} catch (ExecutionException e) {
+			throw new SQLException("Coalesced write into " + collection.getNamespace() + " failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private void flushIfOpen(String key, Batch batch) {
+		synchronized (batch) {
+			if (batch.isClosed) {
+				return;
+			}
+			batch.isClosed = true;
+		}
+		this.pending.remove(key, batch);
+		this.flush(batch);
+	}
+
+	private void flush(Batch batch) {
+		List<WriteModel<BsonDocument>> models = new ArrayList<WriteModel<BsonDocument>>(batch.size);
+		for (Entry entry : batch.entries) {
+			for (BsonDocument document : entry.documents) {
+				models.add(new InsertOneModel<BsonDocument>(document));
+			}
+		}
+		try {
+			batch.collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+			for (Entry entry : batch.entries) {
+				entry.result.complete(entry.documents.size());
+			}
+		} catch (MongoBulkWriteException e) {
+			if (e.getWriteConcernError() != null) {
+				this.fail(batch, e);
+				return;
+			}
+			//write errors carry the index of the failed model, which identifies the entry it came from; like the reply of an
+			//insert command, the entry reports how many of its documents were inserted
+			int start = 0;
+			for (Entry entry : batch.entries) {
+				int end = start + entry.documents.size();
+				int failed = 0;
+				for (BulkWriteError error : e.getWriteErrors()) {
+					if (error.getIndex() >= start && error.getIndex() < end) {
+						failed++;
+					}
+				}
+				entry.result.complete(entry.documents.size() - failed);
+				start = end;
+			}
+		} catch (RuntimeException e) {
+			this.fail(batch, e);
+		}
+	}
+
+	private void fail(Batch batch, RuntimeException e) {
+		for (Entry entry : batch.entries) {
+			entry.result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Sends what is pending and stops the background threads.
+	 */
+	void shutdown() {
+		for (String key : this.pending.keySet()) {
+			Batch batch = this.pending.get(key);
+			if (batch != null) {
+				this.flushIfOpen(key, batch);
+			}
+		}
+		this.scheduler.shutdownNow();
+		this.flusher.shutdown();
+	}
+
+}
@@ -0,0 +1,290 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonObjectId;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationAlternate;
+import com.mongodb.client.model.CollationCaseFirst;
+import com.mongodb.client.model.CollationMaxVariable;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Conversions between the insert, update and delete command documents accepted by MongodbStatement.executeUpdate
+ * and the write models and concerns of the driver.
+ */
+class MongodbWriteCommands {
+
+	static final String INSERT = "insert";
+	static final String UPDATE = "update";
+	static final String DELETE = "delete";
+
+	//what the bulk write API of the driver can express, at command level and for each update or delete statement
+	private static final Set<String> BULK_COMMAND_KEYS = new HashSet<String>(Arrays.asList("documents", "updates", "deletes", "ordered", "writeConcern", "bypassDocumentValidation"));
+	private static final Set<String> BULK_UPDATE_KEYS = new HashSet<String>(Arrays.asList("q", "u", "upsert", "multi", "collation", "arrayFilters"));
+	private static final Set<String> BULK_DELETE_KEYS = new HashSet<String>(Arrays.asList("q", "limit", "collation"));
+
+	private MongodbWriteCommands(){}
+
+	/**
+	 * The name of the command, i.e. its first key, as the server expects it.
+	 */
+	static String commandName(BsonDocument command){
+		return command.isEmpty() ? null : command.getFirstKey();
+	}
+
+	static boolean isWriteCommand(BsonDocument command){
+		String name = commandName(command);
+		return INSERT.equals(name) || UPDATE.equals(name) || DELETE.equals(name);
+	}
+
+	/**
+	 * Whether an insert, update or delete command can be sent as a bulk write without losing any of its options, such
+	 * as hint, let or comment, which the bulk write API of the driver does not have.
+	 */
+	static boolean isBulkWritable(BsonDocument command){
+		if(!isWriteCommand(command))
+			return false;
+		for(String key: command.keySet()){
+			if(!key.equals(commandName(command)) && !BULK_COMMAND_KEYS.contains(key))
+				return false;
+		}
+		if(UPDATE.equals(commandName(command))){
+			for(BsonValue update: command.getArray("updates")){
+				if(!BULK_UPDATE_KEYS.containsAll(update.asDocument().keySet()))
+					return false;
+				//arrayFilters apply to update operators, which a replacement does not have
+				if(isReplacement(update.asDocument().get("u")) && update.asDocument().containsKey("arrayFilters"))
+					return false;
+			}
+		} else if(DELETE.equals(commandName(command))){
+			for(BsonValue delete: command.getArray("deletes")){
+				if(!BULK_DELETE_KEYS.containsAll(delete.asDocument().keySet()))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isReplacement(BsonValue change){
+		return change.isDocument() && (change.asDocument().isEmpty() || !change.asDocument().getFirstKey().startsWith("$"));
+	}
+
+	/**
+	 * The options of the bulk write of a command that isBulkWritable.
+	 */
+	static BulkWriteOptions toBulkWriteOptions(BsonDocument command){
+		BulkWriteOptions options = new BulkWriteOptions().ordered(command.getBoolean("ordered", BsonBoolean.TRUE).getValue());
+		if(command.containsKey("bypassDocumentValidation"))
+			options.bypassDocumentValidation(command.getBoolean("bypassDocumentValidation").getValue());
+		return options;
+	}
+
+	/**
+	 * The write models of an insert, update or delete command that isBulkWritable, in command order. Updates may be
+	 * update documents, replacements or pipelines.
+	 */
+	static List<WriteModel<BsonDocument>> toWriteModels(BsonDocument command){
+		String name = commandName(command);
+		List<WriteModel<BsonDocument>> models = new ArrayList<WriteModel<BsonDocument>>();
+		if(INSERT.equals(name)){
+			for(BsonValue doc: command.getArray("documents")){
+				models.add(new InsertOneModel<BsonDocument>(doc.asDocument()));
+			}
+		} else if(UPDATE.equals(name)){
+			for(BsonValue value: command.getArray("updates")){
+				BsonDocument update = value.asDocument();
+				BsonDocument filter = update.getDocument("q");
+				BsonValue change = update.get("u");
+				boolean upsert = update.getBoolean("upsert", BsonBoolean.FALSE).getValue();
+				boolean multi = update.getBoolean("multi", BsonBoolean.FALSE).getValue();
+				Collation collation = update.isDocument("collation") ? toCollation(update.getDocument("collation")) : null;
+				if(isReplacement(change)){
+					models.add(new ReplaceOneModel<BsonDocument>(filter, change.asDocument(), new ReplaceOptions().upsert(upsert).collation(collation)));
+					continue;
+				}
+				UpdateOptions options = new UpdateOptions().upsert(upsert).collation(collation);
+				if(update.isArray("arrayFilters"))
+					options.arrayFilters(documents(update.getArray("arrayFilters")));
+				if(change.isArray()){
+					List<BsonDocument> pipeline = documents(change.asArray());
+					models.add(multi ? new UpdateManyModel<BsonDocument>(filter, pipeline, options) : new UpdateOneModel<BsonDocument>(filter, pipeline, options));
+				} else {
+					models.add(multi ? new UpdateManyModel<BsonDocument>(filter, change.asDocument(), options) : new UpdateOneModel<BsonDocument>(filter, change.asDocument(), options));
+				}
+			}
+		} else if(DELETE.equals(name)){
+			for(BsonValue value: command.getArray("deletes")){
+				BsonDocument delete = value.asDocument();
+				DeleteOptions options = new DeleteOptions().collation(delete.isDocument("collation") ? toCollation(delete.getDocument("collation")) : null);
+				if(delete.getNumber("limit").intValue() == 1){
+					models.add(new DeleteOneModel<BsonDocument>(delete.getDocument("q"), options));
+				} else {
+					models.add(new DeleteManyModel<BsonDocument>(delete.getDocument("q"), options));
+				}
+			}
+		} else {
+			throw new IllegalArgumentException("Not an insert, update or delete command: " + name);
+		}
+		return models;
+	}
+
+	private static List<BsonDocument> documents(BsonArray array){
+		List<BsonDocument> documents = new ArrayList<BsonDocument>();
+		for(BsonValue value: array){
+			documents.add(value.asDocument());
+		}
+		return documents;
+	}
+
+	/**
+	 * Parses a collation document such as <code>{locale: "fr", strength: 1}</code>.
+	 */
+	static Collation toCollation(BsonDocument collation){
+		Collation.Builder builder = Collation.builder();
+		if(collation.containsKey("locale"))
+			builder.locale(collation.getString("locale").getValue());
+		if(collation.containsKey("caseLevel"))
+			builder.caseLevel(collation.getBoolean("caseLevel").getValue());
+		if(collation.containsKey("caseFirst"))
+			builder.collationCaseFirst(CollationCaseFirst.fromString(collation.getString("caseFirst").getValue()));
+		if(collation.containsKey("strength"))
+			builder.collationStrength(CollationStrength.fromInt(collation.getNumber("strength").intValue()));
+		if(collation.containsKey("numericOrdering"))
+			builder.numericOrdering(collation.getBoolean("numericOrdering").getValue());
+		if(collation.containsKey("alternate"))
+			builder.collationAlternate(CollationAlternate.fromString(collation.getString("alternate").getValue()));
+		if(collation.containsKey("maxVariable"))
+			builder.collationMaxVariable(CollationMaxVariable.fromString(collation.getString("maxVariable").getValue()));
+		if(collation.containsKey("normalization"))
+			builder.normalization(collation.getBoolean("normalization").getValue());
+		if(collation.containsKey("backwards"))
+			builder.backwards(collation.getBoolean("backwards").getValue());
+		return builder.build();
+	}
+
+	/**
+	 * Gives every document of an insert command that lacks an <code>_id</code> a new ObjectId, so that the ids are known
+	 * without asking the server. Returns a new command if any id was assigned, and collects the ids of all documents in order.
+	 */
+	static BsonDocument assignIds(BsonDocument insert, List<BsonValue> ids){
+		BsonArray documents = insert.getArray("documents");
+		BsonArray withIds = null;
+		for(int i=0; i<documents.size(); i++){
+			BsonDocument doc = documents.get(i).asDocument();
+			if(!doc.containsKey("_id")){
+				if(withIds==null)
+					withIds = new BsonArray(new ArrayList<BsonValue>(documents));
+				BsonDocument withId = new BsonDocument("_id", new BsonObjectId(new ObjectId()));
+				withId.putAll(doc);
+				withIds.set(i, withId);
+				doc = withId;
+			}
+			ids.add(doc.get("_id"));
+		}
+		if(withIds==null)
+			return insert;
+		BsonDocument command = new BsonDocument();
+		for(String key: insert.keySet()){
+			command.put(key, "documents".equals(key) ? withIds : insert.get(key));
+		}
+		return command;
+	}
+
+	/**
+	 * The JDBC value of a document id reported as a generated key: the hex string of ObjectIds, the BigDecimal of
+	 * finite decimals, the JSON form of embedded documents and the decoded Java value of anything else.
+	 */
+	static Object idToValue(BsonValue id){
+		if(id.isObjectId())
+			return id.asObjectId().getValue().toHexString();
+		if(id.isDecimal128() && id.asDecimal128().getValue().isFinite())
+			return id.asDecimal128().getValue().bigDecimalValue();
+		if(id.isDocument())
+			return id.asDocument().toJson();
+		return new DocumentCodec().decode(new BsonDocumentReader(new BsonDocument("_id", id)), DecoderContext.builder().build()).get("_id");
+	}
+
+	/**
+	 * The column type of the value idToValue reports for a document id of type.
+	 */
+	static BsonType idValueType(BsonType type){
+		switch(type){
+			case OBJECT_ID:
+			case DOCUMENT:
+				return BsonType.STRING;
+			default:
+				return type;
+		}
+	}
+
+	/**
+	 * Parses a write concern document such as <code>{w: "majority", j: true, wtimeout: 1000}</code>.
+	 */
+	static WriteConcern toWriteConcern(BsonDocument writeConcern){
+		WriteConcern concern = WriteConcern.ACKNOWLEDGED;
+		BsonValue w = writeConcern.get("w");
+		if(w!=null)
+			concern = w.isString() ? new WriteConcern(w.asString().getValue()) : new WriteConcern(w.asNumber().intValue());
+		if(writeConcern.containsKey("j"))
+			concern = concern.withJournal(writeConcern.getBoolean("j").getValue());
+		if(writeConcern.containsKey("wtimeout"))
+			concern = concern.withWTimeout(writeConcern.getNumber("wtimeout").longValue(), TimeUnit.MILLISECONDS);
+		return concern;
+	}
+
+	/**
+	 * Parses a read concern document such as <code>{level: "available"}</code>.
+	 */
+	static ReadConcern toReadConcern(BsonDocument readConcern){
+		if(!readConcern.containsKey("level"))
+			return ReadConcern.DEFAULT;
+		return new ReadConcern(ReadConcernLevel.fromString(readConcern.getString("level").getValue()));
+	}
+
+}
@@ -24,37 +24,44 @@ import com.mongodb.Function;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoIterable;
 
-public class ListMongoIterable implements MongoIterable<String> {
+public class ListMongoIterable<T> implements MongoIterable<T> {
 
-	List<String> entries;
+	List<T> entries;
 
-	public ListMongoIterable(List<String> backingList){
+	public ListMongoIterable(List<T> backingList){
 		this.entries = backingList;
 	}
 	
 	@Override
-	public <U> MongoIterable<U> map(Function<String, U> mapper) {
+	public <U> MongoIterable<U> map(Function<T, U> mapper) {
 		return null;
 	}
 	
 	@Override
-	public MongoCursor<String> iterator() {
-		return new LocalIteratorMongoCursor(entries.iterator());
+	public MongoCursor<T> iterator() {
+		return new LocalIteratorMongoCursor<T>(entries.iterator());
 	}				
 	@Override
-	public <A extends Collection<? super String>> A into(A target) {
-		return null;
+	public MongoCursor<T> cursor() {
+		return this.iterator();
+	}
+	@Override
+	public <A extends Collection<? super T>> A into(A target) {
+		target.addAll(entries);
+		return target;
 	}
 	@Override
-	public void forEach(Block<? super String> block) {
+	public void forEach(Block<? super T> block) {
+		for(T entry: entries)
+			block.apply(entry);
 	}
 	@Override
-	public String first() {
-		Iterator<String> iter = this.iterator();
-		return iter.hasNext()?this.iterator().next():null;
+	public T first() {
+		Iterator<T> iter = this.iterator();
+		return iter.hasNext()?iter.next():null;
 	}
 	@Override
-	public MongoIterable<String> batchSize(int batchSize) {
+	public MongoIterable<T> batchSize(int batchSize) {
 		return this;
 	}
 	
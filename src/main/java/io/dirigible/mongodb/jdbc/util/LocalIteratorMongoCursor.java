@@ -21,11 +21,11 @@ import com.mongodb.ServerAddress;
 import com.mongodb.ServerCursor;
 import com.mongodb.client.MongoCursor;
 
-public class LocalIteratorMongoCursor implements MongoCursor<String> {
+public class LocalIteratorMongoCursor<T> implements MongoCursor<T> {
 
-	Iterator<String> iterator;
+	Iterator<T> iterator;
 	
-	LocalIteratorMongoCursor(Iterator<String> iterator){
+	LocalIteratorMongoCursor(Iterator<T> iterator){
 		this.iterator = iterator;
 	}
 	
@@ -37,12 +37,12 @@ public class LocalIteratorMongoCursor implements MongoCursor<String> {
 		return iterator.hasNext();
 	}
 	@Override
-	public String next() {
+	public T next() {
 		return iterator.next();
 	}
 	@Override
-	public String tryNext() {
-		return null;
+	public T tryNext() {
+		return iterator.hasNext()?iterator.next():null;
 	}
 	@Override
 	public ServerCursor getServerCursor() {
@@ -0,0 +1,298 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.Document;
+
+import com.mongodb.Block;
+import com.mongodb.Function;
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+/**
+ * Scans a collection by splitting it into disjoint <code>_id</code> ranges and reading the ranges concurrently.
+ * Each call to {@link #iterator()} starts a new scan, the same way a find iterable re-executes its query.
+ * Documents from all ranges are merged into one cursor in no particular order.
+ * <p>
+ * The workers of a cursor wait while its queue is full, until the cursor is read or closed. A result set that is never
+ * closed has its cursor closed by MongodbCursorTracker when it is reclaimed, which stops them.
+ */
+public class ParallelScanMongoIterable implements MongoIterable<Document> {
+
+	private static final int SAMPLES_PER_PARTITION = 32;
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final Object END_OF_PARTITION = new Object();
+
+	private final MongoCollection<Document> collection;
+	private final List<BsonDocument> partitionFilters;
+	private final ExecutorService executor;
+	private Integer batchSize;
+
+	public ParallelScanMongoIterable(MongoCollection<Document> collection, List<BsonDocument> partitionFilters, ExecutorService executor){
+		this.collection = collection;
+		this.partitionFilters = partitionFilters;
+		this.executor = executor;
+	}
+
+	/**
+	 * Splits the documents matching filter into at most the requested number of disjoint <code>_id</code> ranges,
+	 * using a <code>$sample</code> of the matching ids to place the range boundaries. The returned filters together
+	 * cover every matching document exactly once, regardless of the BSON types used for <code>_id</code>.
+	 */
+	public static List<BsonDocument> partition(MongoCollection<Document> collection, BsonDocument filter, int partitions){
+		if(filter==null)
+			filter = new BsonDocument();
+		if(partitions < 2)
+			return Arrays.asList(filter);
+
+		List<BsonDocument> pipeline = new ArrayList<BsonDocument>();
+		if(!filter.isEmpty())
+			pipeline.add(new BsonDocument("$match", filter));
+		pipeline.add(new BsonDocument("$sample", new BsonDocument("size", new BsonInt32(partitions * SAMPLES_PER_PARTITION))));
+		pipeline.add(new BsonDocument("$project", new BsonDocument("_id", new BsonInt32(1))));
+		pipeline.add(new BsonDocument("$sort", new BsonDocument("_id", new BsonInt32(1))));
+		List<BsonValue> samples = new ArrayList<BsonValue>();
+		for(BsonDocument sample: collection.aggregate(pipeline, BsonDocument.class)){
+			samples.add(sample.get("_id"));
+		}
+
+		List<BsonValue> boundaries = new ArrayList<BsonValue>();
+		for(int i=1; i<partitions; i++){
+			int idx = i * samples.size() / partitions;
+			if(idx>=samples.size())
+				break;
+			BsonValue boundary = samples.get(idx);
+			if(boundaries.isEmpty() || !boundaries.get(boundaries.size()-1).equals(boundary))
+				boundaries.add(boundary);
+		}
+		if(boundaries.isEmpty())
+			return Arrays.asList(filter);
+
+		List<BsonDocument> filters = new ArrayList<BsonDocument>(boundaries.size() + 1);
+		//the first range is the complement of the rest, so that ids of other BSON types than the boundaries are not lost
+		filters.add(rangeFilter(filter, new BsonDocument("$not", new BsonDocument("$gte", boundaries.get(0)))));
+		for(int i=0; i<boundaries.size()-1; i++){
+			filters.add(rangeFilter(filter, new BsonDocument("$gte", boundaries.get(i)).append("$lt", boundaries.get(i+1))));
+		}
+		filters.add(rangeFilter(filter, new BsonDocument("$gte", boundaries.get(boundaries.size()-1))));
+		return filters;
+	}
+
+	private static BsonDocument rangeFilter(BsonDocument filter, BsonDocument idRange){
+		BsonDocument range = new BsonDocument("_id", idRange);
+		if(filter.isEmpty())
+			return range;
+		return new BsonDocument("$and", new BsonArray(Arrays.asList(filter, range)));
+	}
+
+	public List<BsonDocument> getPartitionFilters() {
+		return partitionFilters;
+	}
+
+	@Override
+	public MongoCursor<Document> iterator() {
+		return new ParallelScanCursor();
+	}
+
+	@Override
+	public MongoCursor<Document> cursor() {
+		return this.iterator();
+	}
+
+	@Override
+	public Document first() {
+		MongoCursor<Document> cursor = this.iterator();
+		try {
+			return cursor.hasNext() ? cursor.next() : null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Override
+	public <U> MongoIterable<U> map(Function<Document, U> mapper) {
+		return null;
+	}
+
+	@Override
+	public void forEach(Block<? super Document> block) {
+		MongoCursor<Document> cursor = this.iterator();
+		try {
+			while(cursor.hasNext())
+				block.apply(cursor.next());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Override
+	public <A extends Collection<? super Document>> A into(A target) {
+		this.forEach((Block<Document>) doc -> target.add(doc));
+		return target;
+	}
+
+	@Override
+	public MongoIterable<Document> batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	private class ParallelScanCursor implements MongoCursor<Document> {
+
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+		private final List<Future<?>> partitions = new ArrayList<Future<?>>();
+		private volatile boolean isClosed;
+		//set by a worker that was interrupted, and thrown to the reader once the queue is drained
+		private volatile RuntimeException failure;
+		private int pendingPartitions;
+		private Document nextDoc;
+
+		ParallelScanCursor(){
+			this.pendingPartitions = partitionFilters.size();
+			for(BsonDocument partitionFilter: partitionFilters){
+				this.partitions.add(executor.submit(() -> this.scan(partitionFilter)));
+			}
+		}
+
+		private void scan(BsonDocument partitionFilter){
+			Object last = END_OF_PARTITION;
+			FindIterable<Document> partition = collection.find(partitionFilter);
+			if(batchSize!=null)
+				partition.batchSize(batchSize);
+			try(MongoCursor<Document> cursor = partition.iterator()){
+				while(!this.isClosed && cursor.hasNext()){
+					if(!this.put(cursor.next()))
+						return;
+				}
+			} catch (RuntimeException e){
+				last = e;
+			}
+			this.put(last);
+		}
+
+		/**
+		 * Queues an item for the reader. Returns false if the cursor was closed or the worker interrupted meanwhile.
+		 */
+		private boolean put(Object item){
+			try {
+				while(!this.isClosed){
+					if(this.queue.offer(item, 100, TimeUnit.MILLISECONDS))
+						return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.failure = new MongoInterruptedException("Interrupted while scanning a partition", e);
+			}
+			return false;
+		}
+
+		private Document take(boolean wait){
+			while(this.nextDoc==null && this.pendingPartitions>0){
+				Object item;
+				try {
+					item = wait ? this.queue.poll(100, TimeUnit.MILLISECONDS) : this.queue.poll();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for partition results", e);
+				}
+				if(item==null){
+					if(this.failure!=null){
+						RuntimeException failure = this.failure;
+						this.close();
+						throw failure;
+					}
+					if(wait)
+						continue;
+					return null;
+				}
+				if(item == END_OF_PARTITION){
+					this.pendingPartitions--;
+				} else if(item instanceof RuntimeException){
+					this.close();
+					throw (RuntimeException) item;
+				} else {
+					this.nextDoc = (Document) item;
+				}
+			}
+			return this.nextDoc;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.take(true) != null;
+		}
+
+		@Override
+		public Document next() {
+			Document doc = this.take(true);
+			if(doc==null)
+				throw new NoSuchElementException();
+			this.nextDoc = null;
+			return doc;
+		}
+
+		@Override
+		public Document tryNext() {
+			Document doc = this.take(false);
+			this.nextDoc = null;
+			return doc;
+		}
+
+		@Override
+		public void close() {
+			if(this.isClosed)
+				return;
+			this.isClosed = true;
+			this.pendingPartitions = 0;
+			for(Future<?> partition: this.partitions){
+				partition.cancel(false);
+			}
+			this.queue.clear();
+		}
+
+		@Override
+		public ServerCursor getServerCursor() {
+			return null;
+		}
+
+		@Override
+		public ServerAddress getServerAddress() {
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.mongodb.Block;
+import com.mongodb.Function;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+/**
+ * The results of a query that were partly read already: the first iteration returns the documents read so far and
+ * then goes on with the open cursor they came from. Later iterations run the query again, the same way a find
+ * iterable re-executes its query.
+ */
+public class PrefetchedMongoIterable<T> implements MongoIterable<T> {
+
+	private final MongoIterable<T> source;
+	private List<T> prefetched;
+	private MongoCursor<T> cursor;
+
+	public PrefetchedMongoIterable(List<T> prefetched, MongoCursor<T> cursor, MongoIterable<T> source){
+		this.prefetched = prefetched;
+		this.cursor = cursor;
+		this.source = source;
+	}
+
+	@Override
+	public synchronized MongoCursor<T> iterator() {
+		if(this.cursor==null)
+			return this.source.iterator();
+		MongoCursor<T> resumed = new ResumedCursor<T>(this.prefetched.iterator(), this.cursor);
+		this.prefetched = null;
+		this.cursor = null;
+		return resumed;
+	}
+
+	@Override
+	public MongoCursor<T> cursor() {
+		return this.iterator();
+	}
+
+	@Override
+	public T first() {
+		MongoCursor<T> cursor = this.iterator();
+		try {
+			return cursor.hasNext() ? cursor.next() : null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Override
+	public <U> MongoIterable<U> map(Function<T, U> mapper) {
+		return null;
+	}
+
+	@Override
+	public void forEach(Block<? super T> block) {
+		MongoCursor<T> cursor = this.iterator();
+		try {
+			while(cursor.hasNext())
+				block.apply(cursor.next());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Override
+	public <A extends Collection<? super T>> A into(A target) {
+		this.forEach((Block<T>) target::add);
+		return target;
+	}
+
+	@Override
+	public MongoIterable<T> batchSize(int batchSize) {
+		this.source.batchSize(batchSize);
+		return this;
+	}
+
+	private static class ResumedCursor<T> implements MongoCursor<T> {
+
+		private final Iterator<T> prefetched;
+		private final MongoCursor<T> cursor;
+
+		ResumedCursor(Iterator<T> prefetched, MongoCursor<T> cursor){
+			this.prefetched = prefetched;
+			this.cursor = cursor;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.prefetched.hasNext() || this.cursor.hasNext();
+		}
+
+		@Override
+		public T next() {
+			if(this.prefetched.hasNext())
+				return this.prefetched.next();
+			if(!this.cursor.hasNext())
+				throw new NoSuchElementException();
+			return this.cursor.next();
+		}
+
+		@Override
+		public T tryNext() {
+			return this.prefetched.hasNext() ? this.prefetched.next() : this.cursor.tryNext();
+		}
+
+		@Override
+		public void close() {
+			this.cursor.close();
+		}
+
+		@Override
+		public ServerCursor getServerCursor() {
+			return this.cursor.getServerCursor();
+		}
+
+		@Override
+		public ServerAddress getServerAddress() {
+			return this.cursor.getServerAddress();
+		}
+
+	}
+
+}
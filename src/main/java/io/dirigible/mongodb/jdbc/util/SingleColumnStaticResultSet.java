@@ -300,14 +300,12 @@ public class SingleColumnStaticResultSet implements ResultSet {
 
 	@Override
 	public Object getObject(int columnIndex) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		return this.currentRecord;
 	}
 
 	@Override
 	public Object getObject(String columnLabel) throws SQLException {
-		// TODO Auto-generated method stub
-		return null;
+		return this.currentRecord;
 	}
 
 	@Override
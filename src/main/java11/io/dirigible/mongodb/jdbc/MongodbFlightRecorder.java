@@ -0,0 +1,85 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import org.bson.BsonDocument;
+
+/**
+ * JDK Flight Recorder events of the driver: statement executions, getMore round trips, result sets from execution to
+ * close, batches and metadata fetches. A begin method returns the started event, or null if it is not recorded, and
+ * the matching end method commits it if it took longer than the threshold of its recording settings.
+ * <p>
+ * This is the version for Java 11 and later, see the one in src/main/java for Java 8. The events themselves are in
+ * MongodbFlightRecorderEvents, so that this class links without jdk.jfr, which a runtime image may leave out.
+ */
+final class MongodbFlightRecorder {
+
+	private static final boolean IS_AVAILABLE = isAvailable();
+
+	private MongodbFlightRecorder(){}
+
+	private static boolean isAvailable() {
+		if (!ModuleLayer.boot().findModule("jdk.jfr").isPresent())
+			return false;
+		try {
+			Class.forName(MongodbFlightRecorderEvents.class.getName(), true, MongodbFlightRecorder.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	static Object beginExecute() {
+		return IS_AVAILABLE ? MongodbFlightRecorderEvents.beginExecute() : null;
+	}
+
+	static void endExecute(Object started, MongodbExecution execution, long rows) {
+		MongodbFlightRecorderEvents.endExecute(started, execution, rows);
+	}
+
+	static Object beginGetMore() {
+		return IS_AVAILABLE ? MongodbFlightRecorderEvents.beginGetMore() : null;
+	}
+
+	static void endGetMore(Object started, MongodbExecution execution, BsonDocument reply, long bytes) {
+		MongodbFlightRecorderEvents.endGetMore(started, execution, reply, bytes);
+	}
+
+	static Object beginResultSet() {
+		return IS_AVAILABLE ? MongodbFlightRecorderEvents.beginResultSet() : null;
+	}
+
+	static void endResultSet(Object started, MongodbExecution execution, long rows) {
+		MongodbFlightRecorderEvents.endResultSet(started, execution, rows);
+	}
+
+	static Object beginBatch() {
+		return IS_AVAILABLE ? MongodbFlightRecorderEvents.beginBatch() : null;
+	}
+
+	static void endBatch(Object started, String collection, int statements, long rows, long bytes) {
+		MongodbFlightRecorderEvents.endBatch(started, collection, statements, rows, bytes);
+	}
+
+	static Object beginMetadata() {
+		return IS_AVAILABLE ? MongodbFlightRecorderEvents.beginMetadata() : null;
+	}
+
+	static void endMetadata(Object started, String kind, String namespace, Object value) {
+		MongodbFlightRecorderEvents.endMetadata(started, kind, namespace, value);
+	}
+
+}
@@ -0,0 +1,208 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.bson.BsonDocument;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder events of MongodbFlightRecorder. All references to jdk.jfr are in this class, which
+ * MongodbFlightRecorder only loads if the runtime has the jdk.jfr module. The thresholds below are the defaults.
+ */
+final class MongodbFlightRecorderEvents {
+
+	private MongodbFlightRecorderEvents(){}
+
+	@Name("io.dirigible.mongodb.jdbc.StatementExecute")
+	@Label("Statement Execute")
+	@Description("An executeQuery until its result set is returned, or an executeUpdate")
+	@Category({"MongoDB", "JDBC"})
+	@Threshold("20 ms")
+	static class StatementExecuteEvent extends Event {
+		@Label("Collection")
+		String collection;
+		@Label("Query Shape Hash")
+		int shapeHash;
+		@Label("Rows")
+		@Description("The update count of an update, 0 for a query")
+		long rows;
+		@Label("Reply Size")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("io.dirigible.mongodb.jdbc.CursorGetMore")
+	@Label("Cursor getMore")
+	@Description("A getMore round trip for the next batch of a cursor")
+	@Category({"MongoDB", "JDBC"})
+	@Threshold("10 ms")
+	static class CursorGetMoreEvent extends Event {
+		@Label("Collection")
+		String collection;
+		@Label("Query Shape Hash")
+		int shapeHash;
+		@Label("Rows")
+		long rows;
+		@Label("Reply Size")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("io.dirigible.mongodb.jdbc.ResultSetClose")
+	@Label("Result Set")
+	@Description("A result set from the execution of its query until it is closed")
+	@Category({"MongoDB", "JDBC"})
+	@Threshold("100 ms")
+	static class ResultSetEvent extends Event {
+		@Label("Collection")
+		String collection;
+		@Label("Query Shape Hash")
+		int shapeHash;
+		@Label("Rows")
+		long rows;
+		@Label("Reply Size")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("io.dirigible.mongodb.jdbc.BatchExecute")
+	@Label("Batch Execute")
+	@Category({"MongoDB", "JDBC"})
+	@Threshold("50 ms")
+	static class BatchExecuteEvent extends Event {
+		@Label("Collection")
+		@Description("The collection all commands name, empty if they name several")
+		String collection;
+		@Label("Statements")
+		int statements;
+		@Label("Rows")
+		long rows;
+		@Label("Reply Size")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("io.dirigible.mongodb.jdbc.MetadataFetch")
+	@Label("Metadata Fetch")
+	@Description("Metadata read from the server because it was not cached")
+	@Category({"MongoDB", "JDBC"})
+	@Threshold("50 ms")
+	static class MetadataFetchEvent extends Event {
+		@Label("Kind")
+		String kind;
+		@Label("Namespace")
+		String namespace;
+		@Label("Rows")
+		long rows;
+	}
+
+	private static <T extends Event> T begin(T event) {
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	static Object beginExecute() {
+		return begin(new StatementExecuteEvent());
+	}
+
+	static void endExecute(Object started, MongodbExecution execution, long rows) {
+		StatementExecuteEvent event = (StatementExecuteEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.collection = execution.getCollection();
+			event.shapeHash = execution.getShapeHash();
+			event.rows = rows;
+			event.bytes = execution.getReplyBytes();
+			event.commit();
+		}
+	}
+
+	static Object beginGetMore() {
+		return begin(new CursorGetMoreEvent());
+	}
+
+	static void endGetMore(Object started, MongodbExecution execution, BsonDocument reply, long bytes) {
+		CursorGetMoreEvent event = (CursorGetMoreEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.collection = execution.getCollection();
+			event.shapeHash = execution.getShapeHash();
+			event.rows = reply.isDocument("cursor") && reply.getDocument("cursor").isArray("nextBatch") ? reply.getDocument("cursor").getArray("nextBatch").size() : 0;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	static Object beginResultSet() {
+		return begin(new ResultSetEvent());
+	}
+
+	static void endResultSet(Object started, MongodbExecution execution, long rows) {
+		ResultSetEvent event = (ResultSetEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.collection = execution.getCollection();
+			event.shapeHash = execution.getShapeHash();
+			event.rows = rows;
+			event.bytes = execution.getReplyBytes();
+			event.commit();
+		}
+	}
+
+	static Object beginBatch() {
+		return begin(new BatchExecuteEvent());
+	}
+
+	static void endBatch(Object started, String collection, int statements, long rows, long bytes) {
+		BatchExecuteEvent event = (BatchExecuteEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.collection = collection;
+			event.statements = statements;
+			event.rows = rows;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	static Object beginMetadata() {
+		return begin(new MetadataFetchEvent());
+	}
+
+	static void endMetadata(Object started, String kind, String namespace, Object value) {
+		MetadataFetchEvent event = (MetadataFetchEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.kind = kind;
+			event.namespace = namespace;
+			event.rows = value instanceof Collection ? ((Collection<?>) value).size() : value instanceof Map ? ((Map<?, ?>) value).size() : 1;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.mongodb.MongoClientURI;
+
+public class MongodbConnectionTest {
+
+	@Test
+	public void badPropertiesReleaseTheSharedClient() {
+		String url = "mongodb://localhost:27017/badproperties";
+		Properties info = new Properties();
+		info.setProperty("statementCacheSize", "abc");
+		try {
+			new MongodbConnection("jdbc:" + url, info);
+			fail("statementCacheSize is not a number");
+		} catch (NumberFormatException e) {
+			//expected
+		}
+		MongodbSharedClient shared = MongodbSharedClient.acquire(new MongoClientURI(url));
+		try {
+			assertEquals(1, shared.getMonitor().getJdbcConnectionCount());
+		} finally {
+			shared.release();
+		}
+	}
+
+}
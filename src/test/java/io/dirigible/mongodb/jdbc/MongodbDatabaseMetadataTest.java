@@ -0,0 +1,72 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+public class MongodbDatabaseMetadataTest {
+
+	@Test
+	public void nullAndPercentMatchEverything() {
+		assertNull(MongodbDatabaseMetadata.likePattern(null));
+		assertNull(MongodbDatabaseMetadata.likePattern("%"));
+		assertEquals(new BsonDocument(), MongodbDatabaseMetadata.nameFilter("%"));
+	}
+
+	@Test
+	public void wildcardsStandForCharacters() {
+		Pattern pattern = MongodbDatabaseMetadata.likePattern("us_r%");
+		assertTrue(pattern.matcher("users").matches());
+		assertTrue(pattern.matcher("user").matches());
+		assertFalse(pattern.matcher("usr").matches());
+		assertFalse(pattern.matcher("orders").matches());
+	}
+
+	@Test
+	public void otherCharactersMatchThemselves() {
+		Pattern pattern = MongodbDatabaseMetadata.likePattern("system.users");
+		assertTrue(pattern.matcher("system.users").matches());
+		assertFalse(pattern.matcher("systemXusers").matches());
+		assertTrue(MongodbDatabaseMetadata.likePattern("a(b)*[c]").matcher("a(b)*[c]").matches());
+	}
+
+	@Test
+	public void nameFiltersAreAnchored() {
+		assertEquals("^" + Pattern.quote("a") + ".*$", MongodbDatabaseMetadata.nameFilter("a%").getRegularExpression("name").getPattern());
+	}
+
+	@Test
+	public void readOnlyIsTheConnectionSetting() throws Exception {
+		//the client connects lazily, so no server is needed
+		MongodbConnection connection = new MongodbConnection("jdbc:mongodb://localhost:27017/test", new Properties());
+		MongodbDatabaseMetadata metadata = new MongodbDatabaseMetadata();
+		metadata.setConnection(connection);
+		assertFalse(metadata.isReadOnly());
+		connection.setReadOnly(true);
+		assertTrue(metadata.isReadOnly());
+		connection.close();
+	}
+
+}
@@ -0,0 +1,108 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MongodbHistogramTest {
+
+	@Test
+	public void smallValuesHaveABucketEach() {
+		for (int value = 0; value < 16; value++) {
+			assertEquals(value, MongodbHistogram.bucket(value));
+			assertEquals(value, MongodbHistogram.lowerBound(value));
+		}
+		assertEquals(16, MongodbHistogram.bucket(16));
+		assertEquals(16, MongodbHistogram.bucket(17));
+		assertEquals(17, MongodbHistogram.bucket(18));
+	}
+
+	@Test
+	public void bucketsStartAtTheirLowerBound() {
+		for (int bucket = 0; bucket < 488; bucket++) {
+			long lowerBound = MongodbHistogram.lowerBound(bucket);
+			assertEquals(bucket, MongodbHistogram.bucket(lowerBound));
+			if (bucket > 0)
+				assertEquals(bucket - 1, MongodbHistogram.bucket(lowerBound - 1));
+		}
+		assertEquals(487, MongodbHistogram.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void bucketsAreAtMostAnEighthWide() {
+		for (int bucket = 16; bucket < 487; bucket++) {
+			long lowerBound = MongodbHistogram.lowerBound(bucket);
+			long width = MongodbHistogram.lowerBound(bucket + 1) - lowerBound;
+			assertTrue(width * 8 <= lowerBound);
+		}
+	}
+
+	@Test
+	public void percentilesAreTheUpperBoundsOfTheirBuckets() {
+		MongodbHistogram histogram = new MongodbHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(50.5, histogram.getMean(), 0);
+		assertEquals(10, histogram.getPercentile(0.1));
+		//50 falls into the bucket [48, 52)
+		assertEquals(51, histogram.getPercentile(0.5));
+		//the upper bound of the last bucket is capped by the largest value recorded
+		assertEquals(100, histogram.getPercentile(0.99));
+		assertEquals(100, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void concurrentRecordsAreAllCounted() throws Exception {
+		MongodbHistogram histogram = new MongodbHistogram();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int thread = 0; thread < 8; thread++) {
+			threads.add(new Thread(() -> {
+				for (int record = 0; record < 10000; record++) {
+					histogram.record(5);
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		histogram.record(100);
+		assertEquals(80001, histogram.getCount());
+		assertEquals(5, histogram.getPercentile(0.9999));
+		assertEquals(100, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void negativeValuesCountAsZero() {
+		MongodbHistogram histogram = new MongodbHistogram();
+		histogram.record(-5);
+		assertEquals(0, histogram.getSum());
+		assertEquals(0, histogram.getPercentile(1));
+	}
+
+}
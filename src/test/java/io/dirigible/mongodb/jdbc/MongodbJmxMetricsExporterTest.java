@@ -0,0 +1,61 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MongodbJmxMetricsExporterTest {
+
+	private static final String NAMES = "io.dirigible.mongodb.jdbc:type=QueryMetrics,collection=\"jmxtest\",*";
+
+	@After
+	public void unregister() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : server.queryNames(new ObjectName(NAMES), null)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Test
+	public void shapesWithTheSameHashAreAllRegistered() throws Exception {
+		//"Aa" and "BB" have the same hash code
+		MongodbQueryMetrics first = new MongodbQueryMetrics("jmxtest", "{find: 1, filter: {Aa: ?}}");
+		MongodbQueryMetrics second = new MongodbQueryMetrics("jmxtest", "{find: 1, filter: {BB: ?}}");
+		assertEquals(first.getShape().hashCode(), second.getShape().hashCode());
+		MongodbJmxMetricsExporter.getInstance().added(first);
+		MongodbJmxMetricsExporter.getInstance().added(second);
+		MongodbJmxMetricsExporter.getInstance().added(second);
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Set<Object> shapes = new HashSet<Object>();
+		for (ObjectName name : server.queryNames(new ObjectName(NAMES), null)) {
+			shapes.add(server.getAttribute(name, "Shape"));
+		}
+		assertEquals(2, shapes.size());
+		assertEquals(2, server.queryNames(new ObjectName(NAMES), null).size());
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.types.Decimal128;
+import org.junit.Test;
+
+public class MongodbLocalQueryTest {
+
+	@Test
+	public void negativeZeroEqualsZero() {
+		assertEquals(0, MongodbLocalQuery.compare(new BsonDouble(-0.0), new BsonDouble(0.0)));
+		assertEquals(0, MongodbLocalQuery.compare(new BsonDouble(-0.0), new BsonInt64(0)));
+		assertEquals(0, MongodbLocalQuery.compare(new BsonDecimal128(Decimal128.NEGATIVE_ZERO), new BsonDouble(0.0)));
+	}
+
+	@Test
+	public void largeNumbersCompareExactly() {
+		long id = (1L << 53) + 1;
+		assertTrue(MongodbLocalQuery.compare(new BsonInt64(id), new BsonDouble(1L << 53)) > 0);
+		assertTrue(MongodbLocalQuery.compare(new BsonInt64(id), new BsonInt64(id + 1)) < 0);
+		assertEquals(0, MongodbLocalQuery.compare(new BsonDecimal128(Decimal128.parse("0.1")), new BsonDecimal128(Decimal128.parse("0.10"))));
+	}
+
+	@Test
+	public void nanSortsBeforeAllNumbers() {
+		assertEquals(0, MongodbLocalQuery.compare(new BsonDouble(Double.NaN), new BsonDecimal128(Decimal128.NaN)));
+		assertTrue(MongodbLocalQuery.compare(new BsonDouble(Double.NaN), new BsonDouble(Double.NEGATIVE_INFINITY)) < 0);
+		assertTrue(MongodbLocalQuery.compare(new BsonDouble(Double.NEGATIVE_INFINITY), new BsonInt64(Long.MIN_VALUE)) < 0);
+		assertTrue(MongodbLocalQuery.compare(new BsonDecimal128(Decimal128.POSITIVE_INFINITY), new BsonInt64(Long.MAX_VALUE)) > 0);
+	}
+
+	@Test
+	public void nanIsInRangeOnlyOfItself() {
+		BsonDocument nan = BsonDocument.parse("{a: NaN}");
+		assertFalse(MongodbLocalQuery.matches(nan, BsonDocument.parse("{a: {$lt: 5}}")));
+		assertTrue(MongodbLocalQuery.matches(nan, BsonDocument.parse("{a: {$gte: NaN}}")));
+		assertFalse(MongodbLocalQuery.matches(nan, BsonDocument.parse("{a: {$gt: NaN}}")));
+		assertTrue(MongodbLocalQuery.matches(nan, BsonDocument.parse("{a: NaN}")));
+	}
+
+	@Test
+	public void stringsCompareByCodePoint() {
+		//U+1F600 is a surrogate pair, which sorts below U+FF5E as UTF-16 units but above it as code points
+		assertTrue(MongodbLocalQuery.compare(new BsonString("\uD83D\uDE00"), new BsonString("\uFF5E")) > 0);
+		assertTrue(MongodbLocalQuery.compareStrings("ab", "abc") < 0);
+		assertEquals(0, MongodbLocalQuery.compareStrings("abc", "abc"));
+	}
+
+	@Test
+	public void matchesFieldsAndOperators() {
+		BsonDocument document = BsonDocument.parse("{a: 1, b: {c: 'x'}, d: [1, 2, 3]}");
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{a: 1.0}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{'b.c': 'x'}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{d: 2}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{d: {$gt: 2}}")));
+		assertFalse(MongodbLocalQuery.matches(document, BsonDocument.parse("{a: {$gt: 'a'}}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{e: null}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{e: {$exists: false}, a: {$in: [0, 1]}}")));
+		assertTrue(MongodbLocalQuery.matches(document, BsonDocument.parse("{$or: [{a: 2}, {a: 1}], $nor: [{a: 3}]}")));
+	}
+
+	@Test
+	public void sortsAndLimits() {
+		List<BsonDocument> documents = Arrays.asList(BsonDocument.parse("{a: 2}"), BsonDocument.parse("{a: -1.5}"), BsonDocument.parse("{}"), BsonDocument.parse("{a: 'x'}"));
+		List<BsonDocument> sorted = MongodbLocalQuery.execute(BsonDocument.parse("{find: 'c', sort: {a: -1}, limit: 3}"), documents);
+		assertEquals(Arrays.asList(documents.get(3), documents.get(0), documents.get(1)), sorted);
+	}
+
+	@Test
+	public void sortingByAnArrayIsLeftToTheServer() {
+		List<BsonDocument> documents = Arrays.asList(BsonDocument.parse("{a: [2, 1]}"), BsonDocument.parse("{a: 3}"));
+		assertNull(MongodbLocalQuery.execute(BsonDocument.parse("{find: 'c', sort: {a: 1}}"), documents));
+	}
+
+	@Test
+	public void supportsOnlyWhatItReproduces() {
+		assertTrue(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', filter: {a: {$gte: 1, $lt: 5}}, sort: {a: 1}, limit: 10}")));
+		assertFalse(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', projection: {a: 1}}")));
+		assertFalse(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', filter: {a: {$regex: 'x'}}}")));
+		assertFalse(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', filter: {a: /x/}}")));
+		assertFalse(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', filter: {a: {b: /x/}}}")));
+		assertFalse(MongodbLocalQuery.isSupported(BsonDocument.parse("{find: 'c', filter: {a: [1, 2]}}")));
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+
+public class MongodbNearCacheTest {
+
+	private MongoClient client;
+	private MongoCollection<Document> countries;
+
+	@Before
+	public void connect() {
+		//the client connects lazily, so no server is needed
+		this.client = new MongoClient();
+		this.countries = this.client.getDatabase("test").getCollection("countries");
+	}
+
+	@After
+	public void close() {
+		this.client.close();
+	}
+
+	@Test
+	public void uniqueKeysFollowTheIndexList() {
+		MongodbNearCache nearCache = new MongodbNearCache("countries");
+		List<BsonDocument> idOnly = Collections.singletonList(BsonDocument.parse("{name: '_id_', key: {_id: 1}}"));
+		assertTrue(nearCache.isCachedKey(this.countries, "_id", () -> idOnly));
+		assertFalse(nearCache.isCachedKey(this.countries, "code", () -> idOnly));
+
+		List<BsonDocument> withCode = Arrays.asList(idOnly.get(0), BsonDocument.parse("{name: 'code_1', key: {code: 1}, unique: true}"));
+		assertTrue(nearCache.isCachedKey(this.countries, "code", () -> withCode));
+		assertFalse(nearCache.isCachedKey(this.countries, "code", () -> idOnly));
+	}
+
+	@Test
+	public void partialAndCompoundIndexesAreNotKeys() {
+		MongodbNearCache nearCache = new MongodbNearCache("countries");
+		List<BsonDocument> indexes = Arrays.asList(
+				BsonDocument.parse("{name: 'code_1', key: {code: 1}, unique: 1, partialFilterExpression: {code: {$exists: true}}}"),
+				BsonDocument.parse("{name: 'a_1_b_1', key: {a: 1, b: 1}, unique: true}"));
+		assertFalse(nearCache.isCachedKey(this.countries, "code", () -> indexes));
+		assertFalse(nearCache.isCachedKey(this.countries, "a", () -> indexes));
+		assertFalse(nearCache.isCachedKey(this.client.getDatabase("test").getCollection("users"), "_id", () -> indexes));
+	}
+
+}
@@ -0,0 +1,75 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.types.Decimal128;
+import org.junit.Test;
+
+public class MongodbPointLookupLoaderTest {
+
+	@Test
+	public void numbersOfTheSameValueShareAKey() {
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonInt32(42)), MongodbPointLookupLoader.matchKey(new BsonInt64(42)));
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonInt64(42)), MongodbPointLookupLoader.matchKey(new BsonDouble(42.0)));
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonInt32(0)), MongodbPointLookupLoader.matchKey(new BsonDouble(-0.0)));
+	}
+
+	@Test
+	public void largeLongsKeepDistinctKeys() {
+		long id = (1L << 53) + 1;
+		assertNotEquals(MongodbPointLookupLoader.matchKey(new BsonInt64(id)), MongodbPointLookupLoader.matchKey(new BsonInt64(id + 1)));
+		assertEquals(new BsonInt64(Long.MAX_VALUE), MongodbPointLookupLoader.matchKey(new BsonInt64(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void decimalsShareAKeyWithNumbersOfTheSameValue() {
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonInt32(1)), MongodbPointLookupLoader.matchKey(new BsonDecimal128(Decimal128.parse("1"))));
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonInt32(1)), MongodbPointLookupLoader.matchKey(new BsonDecimal128(Decimal128.parse("1.00"))));
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonDouble(1.5)), MongodbPointLookupLoader.matchKey(new BsonDecimal128(Decimal128.parse("1.5"))));
+		assertEquals(MongodbPointLookupLoader.matchKey(new BsonDouble(Double.NaN)), MongodbPointLookupLoader.matchKey(new BsonDecimal128(Decimal128.NaN)));
+		assertNotEquals(MongodbPointLookupLoader.matchKey(new BsonDouble(0.1)), MongodbPointLookupLoader.matchKey(new BsonDecimal128(Decimal128.parse("0.1"))));
+		assertNotEquals(MongodbPointLookupLoader.matchKey(new BsonDouble(0x1p63)), MongodbPointLookupLoader.matchKey(new BsonInt64(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void embeddedNumbersShareAKey() {
+		BsonDocument id = new BsonDocument("a", new BsonInt32(1)).append("b", new BsonArray(Arrays.asList(new BsonInt32(2))));
+		BsonDocument sameId = new BsonDocument("a", new BsonDecimal128(Decimal128.parse("1"))).append("b", new BsonArray(Arrays.asList(new BsonDouble(2.0))));
+		assertEquals(MongodbPointLookupLoader.matchKey(id), MongodbPointLookupLoader.matchKey(sameId));
+		BsonDocument reordered = new BsonDocument("b", new BsonArray(Arrays.asList(new BsonInt32(2)))).append("a", new BsonInt32(1));
+		assertNotEquals(MongodbPointLookupLoader.matchKey(id), MongodbPointLookupLoader.matchKey(reordered));
+	}
+
+	@Test
+	public void otherValuesAreKeptAsTheyAre() {
+		assertEquals(new BsonString("42"), MongodbPointLookupLoader.matchKey(new BsonString("42")));
+		assertEquals(new BsonBoolean(true), MongodbPointLookupLoader.matchKey(new BsonBoolean(true)));
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+
+public class MongodbPreparedStatementTest {
+
+	private MongodbConnection connection;
+
+	@Before
+	public void connect() {
+		Properties info = new Properties();
+		info.setProperty("statementCacheSize", "10");
+		//the client connects lazily, so no server is needed
+		this.connection = new MongodbConnection("jdbc:mongodb://localhost:27017/test", info);
+	}
+
+	@After
+	public void close() throws Exception {
+		this.connection.close();
+	}
+
+	@Test
+	public void reusedStatementsHaveTheirSettingsCleared() throws Exception {
+		String sql = "{insert: 'users', documents: [{a: 1}]}";
+		MongodbPreparedStatement statement = (MongodbPreparedStatement) this.connection.prepareStatement(sql);
+		statement.setWriteConcern(WriteConcern.UNACKNOWLEDGED);
+		statement.setReadConcern(ReadConcern.MAJORITY);
+		Executor executor = Runnable::run;
+		statement.setAsyncExecutor(executor);
+		statement.closeOnCompletion();
+		statement.close();
+
+		MongodbPreparedStatement reused = (MongodbPreparedStatement) this.connection.prepareStatement(sql);
+		assertSame(statement, reused);
+		assertNull(reused.getWriteConcern());
+		assertNull(reused.getReadConcern());
+		assertFalse(reused.isCloseOnCompletion());
+		assertTrue(reused.generatedKeys.isEmpty());
+		reused.close();
+	}
+
+}
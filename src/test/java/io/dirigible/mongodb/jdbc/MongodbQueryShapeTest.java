@@ -0,0 +1,62 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+public class MongodbQueryShapeTest {
+
+	@Test
+	public void literalsAreMasked() {
+		assertEquals("{\"find\": \"users\", \"filter\": {\"age\": {\"$gt\": \"?\"}, \"name\": \"?\"}}",
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {age: {$gt: 30}, name: 'x'}}")));
+	}
+
+	@Test
+	public void queriesThatDifferInValuesShareAShape() {
+		assertEquals(MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {_id: {$in: [1, 2, 3]}}}")),
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {_id: {$in: ['a']}}}")));
+		assertEquals(MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {a: 1}, batchSize: 10, db: 'x'}")),
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {a: 2}}")));
+	}
+
+	@Test
+	public void sortAndProjectionArePartOfTheShape() {
+		assertNotEquals(MongodbQueryShape.of(BsonDocument.parse("{find: 'users', sort: {a: 1}}")),
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', sort: {a: -1}}")));
+		assertNotEquals(MongodbQueryShape.of(BsonDocument.parse("{find: 'users', projection: {a: 1}}")),
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', projection: {b: 1}}")));
+		assertNotEquals(MongodbQueryShape.of(BsonDocument.parse("{find: 'users'}")),
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'orders'}")));
+	}
+
+	@Test
+	public void documentsInArraysKeepTheirShape() {
+		assertEquals("{\"find\": \"users\", \"filter\": {\"$or\": [{\"a\": \"?\"}, {\"b\": \"?\"}]}}",
+				MongodbQueryShape.of(BsonDocument.parse("{find: 'users', filter: {$or: [{a: 1}, {b: 2}]}}")));
+	}
+
+	@Test
+	public void commandsKeepOnlyTheirFieldNames() {
+		assertEquals("{\"insert\": \"users\", \"documents\": \"?\", \"ordered\": \"?\"}",
+				MongodbQueryShape.ofCommand(BsonDocument.parse("{insert: 'users', documents: [{a: 1}], ordered: false}")));
+	}
+
+}
@@ -0,0 +1,49 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+
+public class MongodbResultCacheTest {
+
+	@Test
+	public void equivalentSpecificationsShareAKey() {
+		assertEquals(MongodbResultCache.key("db", ReadPreference.primary(), BsonDocument.parse("{find: 'c', filter: {a: 1, b: {$lt: 2, $gt: 0}}}")),
+				MongodbResultCache.key("db", ReadPreference.primary(), BsonDocument.parse("{filter: {b: {$gt: 0, $lt: 2}, a: 1}, find: 'c', batchSize: 10}")));
+	}
+
+	@Test
+	public void readPreferencesHaveTheirOwnKeys() {
+		BsonDocument spec = BsonDocument.parse("{find: 'c', filter: {a: 1}}");
+		String primary = MongodbResultCache.key("db", ReadPreference.primary(), spec);
+		assertNotEquals(primary, MongodbResultCache.key("db", ReadPreference.secondaryPreferred(), spec));
+		TagSet east = new TagSet(Collections.singletonList(new Tag("dc", "east")));
+		assertNotEquals(MongodbResultCache.key("db", ReadPreference.secondary(), spec), MongodbResultCache.key("db", ReadPreference.secondary(east), spec));
+		assertNotEquals(MongodbResultCache.key("db", ReadPreference.secondary(), spec), MongodbResultCache.key("db", ReadPreference.secondary(120, TimeUnit.SECONDS), spec));
+	}
+
+}
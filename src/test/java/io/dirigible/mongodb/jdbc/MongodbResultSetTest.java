@@ -0,0 +1,117 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.Block;
+import com.mongodb.client.MongoCursor;
+
+import io.dirigible.mongodb.jdbc.util.ListMongoIterable;
+
+public class MongodbResultSetTest {
+
+	private MongodbConnection connection;
+
+	@Before
+	public void connect() {
+		//the client connects lazily, so no server is needed
+		this.connection = new MongodbConnection("jdbc:mongodb://localhost:27017/test", new Properties());
+	}
+
+	@After
+	public void close() throws Exception {
+		this.connection.close();
+	}
+
+	private ResultSet resultSet(Document row) throws Exception {
+		ResultSet rs = new MongodbResultSet(new MongodbStatement(this.connection), new ListMongoIterable<Document>(Collections.singletonList(row)), "test");
+		assertTrue(rs.next());
+		return rs;
+	}
+
+	@Test
+	public void metadataDoesNotRunTheQueryAgain() throws Exception {
+		AtomicInteger scans = new AtomicInteger();
+		List<Document> rows = Arrays.asList(new Document("_id", 1).append("a", 1), new Document("_id", 2).append("b", "x"));
+		ListMongoIterable<Document> iterable = new ListMongoIterable<Document>(rows) {
+			@Override
+			public MongoCursor<Document> iterator() {
+				scans.incrementAndGet();
+				return super.iterator();
+			}
+			@Override
+			public void forEach(Block<? super Document> block) {
+				scans.incrementAndGet();
+				super.forEach(block);
+			}
+		};
+		ResultSet rs = new MongodbResultSet(new MongodbStatement(this.connection), iterable, "test");
+		assertTrue(rs.next());
+		ResultSetMetaData metadata = rs.getMetaData();
+		assertEquals(2, metadata.getColumnCount());
+		assertEquals("a", metadata.getColumnLabel(1));
+		assertEquals("b", metadata.getColumnLabel(2));
+		assertEquals(1, rs.getInt(1));
+		assertTrue(rs.next());
+		assertEquals("x", rs.getString(2));
+		assertFalse(rs.next());
+		assertEquals(1, scans.get());
+		rs.close();
+	}
+
+	@Test
+	public void numbersAreReadWhateverTheirType() throws Exception {
+		ResultSet rs = this.resultSet(new Document("short", (short) 3).append("long", 4L).append("int", 5).append("decimal", Decimal128.parse("6")));
+		assertEquals(3, rs.getInt("short"));
+		assertEquals(3L, rs.getLong("short"));
+		assertEquals(4, rs.getInt("long"));
+		assertEquals(5L, rs.getLong("int"));
+		assertEquals(5.0, rs.getDouble("int"), 0);
+		assertEquals((short) 6, rs.getShort("decimal"));
+		assertFalse(rs.wasNull());
+		rs.close();
+	}
+
+	@Test
+	public void nullNumbersAreZero() throws Exception {
+		ResultSet rs = this.resultSet(new Document("EXPIRE_AFTER_SECONDS", null).append("TYPE", (short) 3));
+		assertEquals(0L, rs.getLong("EXPIRE_AFTER_SECONDS"));
+		assertTrue(rs.wasNull());
+		assertEquals(3, rs.getInt("TYPE"));
+		assertFalse(rs.wasNull());
+		assertEquals(0, rs.getShort("EXPIRE_AFTER_SECONDS"));
+		assertTrue(rs.wasNull());
+		rs.close();
+	}
+
+}
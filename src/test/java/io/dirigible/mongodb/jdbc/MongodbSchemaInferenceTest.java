@@ -0,0 +1,70 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.DatabaseMetaData;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.junit.Test;
+
+public class MongodbSchemaInferenceTest {
+
+	private static BsonDocument validator(String jsonSchema) {
+		return new BsonDocument("validator", new BsonDocument("$jsonSchema", BsonDocument.parse(jsonSchema)));
+	}
+
+	private static MongodbSchemaInference.Column column(List<MongodbSchemaInference.Column> columns, String name) {
+		for (MongodbSchemaInference.Column column : columns) {
+			if (column.name.equals(name))
+				return column;
+		}
+		throw new AssertionError("No column " + name);
+	}
+
+	@Test
+	public void sampledColumnsHaveUnknownNullability() {
+		List<BsonDocument> sample = Arrays.asList(BsonDocument.parse("{a: 1, b: 'x'}"), BsonDocument.parse("{a: 2}"));
+		List<MongodbSchemaInference.Column> columns = MongodbSchemaInference.infer(new BsonDocument(), sample);
+		assertEquals(DatabaseMetaData.columnNullableUnknown, column(columns, "a").nullable);
+		assertEquals(DatabaseMetaData.columnNullable, column(columns, "b").nullable);
+	}
+
+	@Test
+	public void requiredColumnsThatAllowNullAreNullable() {
+		BsonDocument options = validator("{required: ['a', 'b'], properties: {a: {bsonType: ['string', 'null']}, b: {bsonType: 'string'}}}");
+		List<MongodbSchemaInference.Column> columns = MongodbSchemaInference.infer(options, Collections.<BsonDocument>emptyList());
+		assertEquals(DatabaseMetaData.columnNullable, column(columns, "a").nullable);
+		assertEquals(BsonType.STRING, column(columns, "a").type);
+		assertEquals(DatabaseMetaData.columnNoNulls, column(columns, "b").nullable);
+	}
+
+	@Test
+	public void declaredColumnsWithoutATypeTakeTheSampledType() {
+		BsonDocument options = validator("{required: ['a'], properties: {a: {description: 'no type'}, b: {bsonType: 'int'}}}");
+		List<BsonDocument> sample = Arrays.asList(BsonDocument.parse("{a: 1, b: 'x'}"), BsonDocument.parse("{a: {$numberLong: '2'}}"));
+		List<MongodbSchemaInference.Column> columns = MongodbSchemaInference.infer(options, sample);
+		assertEquals(BsonType.INT64, column(columns, "a").type);
+		assertEquals(DatabaseMetaData.columnNoNulls, column(columns, "a").nullable);
+		assertEquals(BsonType.INT32, column(columns, "b").type);
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Properties;
+
+import org.bson.BsonDecimal128;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MongodbStatementTest {
+
+	private MongodbConnection connection;
+
+	@Before
+	public void connect() {
+		//the client connects lazily, so no server is needed
+		this.connection = new MongodbConnection("jdbc:mongodb://localhost:27017/test", new Properties());
+	}
+
+	@After
+	public void close() throws Exception {
+		this.connection.close();
+	}
+
+	@Test
+	public void generatedKeysHaveAnIdColumn() throws Exception {
+		ObjectId objectId = new ObjectId();
+		MongodbStatement statement = new MongodbStatement(this.connection);
+		statement.generatedKeys.add(new BsonObjectId(objectId));
+		statement.generatedKeys.add(new BsonString("b"));
+
+		ResultSet keys = statement.getGeneratedKeys();
+		ResultSetMetaData metadata = keys.getMetaData();
+		assertEquals(1, metadata.getColumnCount());
+		assertEquals("_id", metadata.getColumnLabel(1));
+		assertEquals(Types.VARCHAR, metadata.getColumnType(1));
+		assertTrue(keys.next());
+		assertEquals(objectId.toHexString(), keys.getObject(1));
+		assertEquals(objectId.toHexString(), keys.getString("_id"));
+		assertTrue(keys.next());
+		assertEquals("b", keys.getString(1));
+		assertFalse(keys.next());
+		keys.close();
+		statement.close();
+	}
+
+	@Test
+	public void generatedKeysHaveTheirNaturalValues() throws Exception {
+		MongodbStatement statement = new MongodbStatement(this.connection);
+		statement.generatedKeys.add(new BsonInt64(7L));
+		statement.generatedKeys.add(new BsonDecimal128(Decimal128.parse("1.5")));
+
+		ResultSet keys = statement.getGeneratedKeys();
+		assertEquals(Types.BIGINT, keys.getMetaData().getColumnType(1));
+		assertTrue(keys.next());
+		assertEquals(7L, keys.getObject("_id"));
+		assertTrue(keys.next());
+		assertEquals(new BigDecimal("1.5"), keys.getObject(1));
+		keys.close();
+		statement.close();
+	}
+
+}
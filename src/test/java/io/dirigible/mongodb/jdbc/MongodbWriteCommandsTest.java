@@ -0,0 +1,72 @@
+/**
+ * 	Copyright 2015 Georgi Pavlov
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.dirigible.mongodb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+public class MongodbWriteCommandsTest {
+
+	@Test
+	public void optionsTheBulkApiLacksAreNotBulkWritable() {
+		assertTrue(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{update: 'c', updates: [{q: {}, u: {$set: {a: 1}}, collation: {locale: 'fr'}, arrayFilters: [{'e.a': 1}]}], bypassDocumentValidation: true}")));
+		assertFalse(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{update: 'c', updates: [{q: {}, u: {$set: {a: 1}}, hint: {a: 1}}]}")));
+		assertFalse(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{delete: 'c', deletes: [{q: {}, limit: 0, hint: 'a_1'}]}")));
+		assertFalse(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{update: 'c', updates: [{q: {}, u: {$set: {a: '$$x'}}}], let: {x: 1}}")));
+		assertFalse(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{insert: 'c', documents: [{}], comment: 'x'}")));
+		assertFalse(MongodbWriteCommands.isBulkWritable(BsonDocument.parse("{create: 'c'}")));
+	}
+
+	@Test
+	public void updateOptionsAreKept() {
+		List<WriteModel<BsonDocument>> models = MongodbWriteCommands.toWriteModels(BsonDocument.parse("{update: 'c', updates: [{q: {}, u: {$set: {'e.$[x].a': 2}}, multi: true, collation: {locale: 'fr', strength: 1}, arrayFilters: [{'x.a': 1}]}]}"));
+		UpdateManyModel<BsonDocument> model = (UpdateManyModel<BsonDocument>) models.get(0);
+		assertEquals("fr", model.getOptions().getCollation().getLocale());
+		assertEquals(CollationStrength.PRIMARY, model.getOptions().getCollation().getStrength());
+		assertEquals(1, model.getOptions().getArrayFilters().size());
+	}
+
+	@Test
+	public void pipelineUpdatesAreSupported() {
+		List<WriteModel<BsonDocument>> models = MongodbWriteCommands.toWriteModels(BsonDocument.parse("{update: 'c', updates: [{q: {a: 1}, u: [{$set: {b: '$a'}}]}]}"));
+		assertEquals(1, ((UpdateOneModel<BsonDocument>) models.get(0)).getUpdatePipeline().size());
+	}
+
+	@Test
+	public void deleteCollationIsKept() {
+		List<WriteModel<BsonDocument>> models = MongodbWriteCommands.toWriteModels(BsonDocument.parse("{delete: 'c', deletes: [{q: {a: 'x'}, limit: 1, collation: {locale: 'de'}}]}"));
+		assertEquals("de", ((DeleteOneModel<BsonDocument>) models.get(0)).getOptions().getCollation().getLocale());
+	}
+
+	@Test
+	public void bypassDocumentValidationIsKept() {
+		assertEquals(Boolean.TRUE, MongodbWriteCommands.toBulkWriteOptions(BsonDocument.parse("{insert: 'c', documents: [], bypassDocumentValidation: true}")).getBypassDocumentValidation());
+		assertFalse(MongodbWriteCommands.toBulkWriteOptions(BsonDocument.parse("{insert: 'c', documents: [], ordered: false}")).isOrdered());
+	}
+
+}